@@ -0,0 +1,117 @@
+package me.foncused.duoauth.spigot.database;
+
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.TestServer;
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import sun.misc.Unsafe;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Pre-login reads mixed with attempt writes, one method per async worker count, a single stripe behaves like the old global monitor
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class JsonDatabaseBenchmark {
+
+	private static final int USERS = 1000;
+
+	@Param({"1", "64"})
+	public int stripes;
+
+	// One in this many operations is a write
+	@Param({"4"})
+	public int writeRatio;
+
+	private Path folder;
+	private JsonDatabase db;
+	private UUID[] uuids;
+
+	@Setup
+	public void setup() throws Exception {
+		TestServer.install();
+		this.folder = Files.createTempDirectory("duoauth-bench");
+		// The plugin is never enabled, only the data folder the database reads is set
+		final Field unsafe = Unsafe.class.getDeclaredField("theUnsafe");
+		unsafe.setAccessible(true);
+		final DuoAuth plugin = (DuoAuth) ((Unsafe) unsafe.get(null)).allocateInstance(DuoAuth.class);
+		final Field dataFolder = JavaPlugin.class.getDeclaredField("dataFolder");
+		dataFolder.setAccessible(true);
+		dataFolder.set(plugin, this.folder.toFile());
+		this.db = new JsonDatabase(plugin, this.stripes);
+		this.uuids = new UUID[USERS];
+		final InetAddress ip = InetAddress.getByName("127.0.0.1");
+		for(int i = 0; i < USERS; i++) {
+			this.uuids[i] = UUID.randomUUID();
+			if(!(this.db.writeRecord(this.uuids[i], new AuthRecord("$2a$12$hash", "SECRET", true, 0, ip, System.currentTimeMillis())))) {
+				throw new IllegalStateException("Unable to write user " + this.uuids[i]);
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		try(final Stream<Path> paths = Files.walk(this.folder)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private Object operation() {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final UUID uuid = this.uuids[random.nextInt(USERS)];
+		if(random.nextInt(this.writeRatio) == 0) {
+			return this.db.writeProperty(uuid, DatabaseProperty.ATTEMPTS, random.nextInt(5));
+		}
+		return this.db.readRecord(uuid);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Object workers1() {
+		return this.operation();
+	}
+
+	@Benchmark
+	@Threads(2)
+	public Object workers2() {
+		return this.operation();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Object workers4() {
+		return this.operation();
+	}
+
+	@Benchmark
+	@Threads(8)
+	public Object workers8() {
+		return this.operation();
+	}
+
+}
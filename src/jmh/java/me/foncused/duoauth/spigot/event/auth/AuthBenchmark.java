@@ -0,0 +1,144 @@
+package me.foncused.duoauth.spigot.event.auth;
+
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.cache.AuthCache;
+import me.foncused.duoauth.spigot.cache.AuthGate;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Per-event cost of the Auth handlers with every online player authed, against the checks they ran before the gate
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class AuthBenchmark {
+
+	private static final int ONLINE = 200;
+
+	// Players still logging in, gated but not sending the measured events
+	@Param({"0", "1", "5"})
+	public int joining;
+
+	private DuoAuth plugin;
+	private Auth auth;
+	private PlayerMoveEvent[] moves;
+	private PlayerInteractEvent[] interacts;
+	private int next;
+
+	@Setup
+	public void setup() throws Exception {
+		// The plugin is never enabled, only the player state the handlers read is set up
+		final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+		field.setAccessible(true);
+		this.plugin = (DuoAuth) ((Unsafe) field.get(null)).allocateInstance(DuoAuth.class);
+		this.set("players", new ConcurrentHashMap<UUID, AuthCache>());
+		this.set("gate", new AuthGate());
+		this.auth = new Auth(this.plugin);
+		this.moves = new PlayerMoveEvent[ONLINE];
+		this.interacts = new PlayerInteractEvent[ONLINE];
+		for(int i = 0; i < ONLINE; i++) {
+			final Player player = player(UUID.randomUUID());
+			this.plugin.setAuthCache(player.getUniqueId(), new AuthCache("password", "secret", true, 0, null));
+			this.moves[i] = new PlayerMoveEvent(player, new Location(null, i, 64, i), new Location(null, i + 0.2, 64, i));
+			this.interacts[i] = new PlayerInteractEvent(player, Action.RIGHT_CLICK_AIR, null, null, null);
+		}
+		for(int i = 0; i < this.joining; i++) {
+			this.plugin.setAuthCache(UUID.randomUUID(), new AuthCache("password", "secret", false, 0, null));
+		}
+	}
+
+	private void set(final String name, final Object value) throws ReflectiveOperationException {
+		final Field field = DuoAuth.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(this.plugin, value);
+	}
+
+	private static Player player(final UUID uuid) {
+		return (Player) Proxy.newProxyInstance(
+				AuthBenchmark.class.getClassLoader(),
+				new Class<?>[]{Player.class},
+				(proxy, method, args) -> {
+					switch(method.getName()) {
+						case "getUniqueId":
+							return uuid;
+						case "hashCode":
+							return uuid.hashCode();
+						case "equals":
+							return proxy == args[0];
+						case "hasPermission":
+							return false;
+						default:
+							return null;
+					}
+				}
+		);
+	}
+
+	private int next() {
+		final int next = this.next;
+		this.next = next + 1 == ONLINE ? 0 : next + 1;
+		return next;
+	}
+
+	@Benchmark
+	public boolean move() {
+		final PlayerMoveEvent event = this.moves[this.next()];
+		this.auth.onPlayerMove(event);
+		return event.isCancelled();
+	}
+
+	@Benchmark
+	public boolean previousMove() {
+		final PlayerMoveEvent event = this.moves[this.next()];
+		this.previous(event.getPlayer());
+		return event.isCancelled();
+	}
+
+	@Benchmark
+	public boolean interact() {
+		final PlayerInteractEvent event = this.interacts[this.next()];
+		this.auth.onPlayerInteract(event);
+		return event.isCancelled();
+	}
+
+	@Benchmark
+	public boolean previousInteract() {
+		final PlayerInteractEvent event = this.interacts[this.next()];
+		this.previous(event.getPlayer());
+		return event.isCancelled();
+	}
+
+	// The checks every handler made before reaching its own logic, which an authed player always passes
+	private boolean previous(final Player player) {
+		final AuthCache cache = this.plugin.getAuthCache(player.getUniqueId());
+		if(cache == null && player.hasPermission("duoauth.enforced")) {
+			return true;
+		}
+		return cache != null && (!(cache.isAuthed()));
+	}
+
+}
@@ -0,0 +1,65 @@
+package me.foncused.duoauth.spigot.lib.foncused;
+
+import com.warrenstrange.googleauth.GoogleAuthenticator;
+import com.warrenstrange.googleauth.GoogleAuthenticatorConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.Key;
+import java.util.concurrent.TimeUnit;
+
+// Compares a rejected code checked in-house against the library, which is the cost of every wrong guess
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class TotpBenchmark {
+
+	private static final String SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+
+	@Param({"0", "1", "3"})
+	public int window;
+
+	private Key key;
+	private GoogleAuthenticator ga;
+	private int code;
+
+	@Setup
+	public void setup() throws Exception {
+		this.key = Totp.decode(SECRET);
+		this.ga = new GoogleAuthenticator(
+				new GoogleAuthenticatorConfig.GoogleAuthenticatorConfigBuilder()
+						.setWindowSize(this.window * 2 + 1)
+						.build()
+		);
+		// A code from far outside the window so every step is checked by both
+		this.code = Totp.generate(this.key, 0L);
+	}
+
+	@Benchmark
+	public boolean cachedKey() {
+		return Totp.verify(this.key, this.code, System.currentTimeMillis(), this.window);
+	}
+
+	@Benchmark
+	public boolean decodedKey() {
+		return Totp.verify(Totp.decode(SECRET), this.code, System.currentTimeMillis(), this.window);
+	}
+
+	@Benchmark
+	public boolean library() {
+		return this.ga.authorize(SECRET, this.code);
+	}
+
+}
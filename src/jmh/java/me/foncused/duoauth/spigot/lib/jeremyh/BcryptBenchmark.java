@@ -0,0 +1,60 @@
+package me.foncused.duoauth.spigot.lib.jeremyh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Compares the reusing engine against the previous implementation, run with -prof gc to see the allocation difference
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class BcryptBenchmark {
+
+	private static final String PASSWORD = "DuoAuth#2020";
+
+	@Param({"12", "13", "14", "15", "16"})
+	public int cost;
+
+	private String salt;
+
+	@Setup
+	public void setup() {
+		this.salt = Bcrypt.gensalt(this.cost);
+	}
+
+	@Benchmark
+	public String current() {
+		return Bcrypt.hashpw(PASSWORD, this.salt);
+	}
+
+	@Benchmark
+	public String legacy() {
+		return LegacyBcrypt.hashpw(PASSWORD, this.salt);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public String currentGensalt() {
+		return Bcrypt.gensalt(this.cost);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public String legacyGensalt() {
+		return LegacyBcrypt.gensalt(this.cost);
+	}
+
+}
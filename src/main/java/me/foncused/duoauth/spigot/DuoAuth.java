@@ -2,20 +2,39 @@ package me.foncused.duoauth.spigot;
 
 import com.google.common.io.ByteStreams;
 import me.foncused.duoauth.spigot.cache.AuthCache;
+import me.foncused.duoauth.spigot.cache.AuthGate;
+import me.foncused.duoauth.spigot.cache.FailureSketch;
 import me.foncused.duoauth.spigot.command.AuthCommand;
 import me.foncused.duoauth.spigot.config.ConfigManager;
 import me.foncused.duoauth.spigot.config.LangManager;
 import me.foncused.duoauth.spigot.database.AuthDatabase;
+import me.foncused.duoauth.spigot.database.ExpiryIndex;
+import me.foncused.duoauth.spigot.database.IndexedDatabase;
+import me.foncused.duoauth.spigot.database.JsonDatabase;
+import me.foncused.duoauth.spigot.database.LogDatabase;
+import me.foncused.duoauth.spigot.database.MappedDatabase;
+import me.foncused.duoauth.spigot.database.MysqlDatabase;
+import me.foncused.duoauth.spigot.database.SqliteDatabase;
+import me.foncused.duoauth.spigot.database.WriteBehindDatabase;
 import me.foncused.duoauth.spigot.enumerable.AuthMessage;
+import me.foncused.duoauth.spigot.enumerable.DatabaseOption;
 import me.foncused.duoauth.spigot.event.auth.Auth;
 import me.foncused.duoauth.spigot.event.player.AsyncPlayerPreLogin;
+import me.foncused.duoauth.spigot.hash.Argon2Hasher;
+import me.foncused.duoauth.spigot.hash.BcryptHasher;
+import me.foncused.duoauth.spigot.hash.HashExecutor;
+import me.foncused.duoauth.spigot.hash.PasswordHasher;
+import me.foncused.duoauth.spigot.hash.PasswordHashers;
 import me.foncused.duoauth.spigot.event.player.PlayerJoin;
 import me.foncused.duoauth.spigot.event.player.PlayerLogin;
 import me.foncused.duoauth.spigot.event.player.PlayerQuit;
 import me.foncused.duoauth.spigot.lib.aikar.TaskChainManager;
 import me.foncused.duoauth.spigot.lib.foncused.AuthFilter;
 import me.foncused.duoauth.spigot.lib.wstrange.GoogleAuth;
+import me.foncused.duoauth.spigot.map.QrMaps;
 import me.foncused.duoauth.spigot.runnable.AuthRunnable;
+import me.foncused.duoauth.spigot.runnable.ExpiryScheduler;
+import me.foncused.duoauth.spigot.runnable.IncrementalSweeper;
 import me.foncused.duoauth.spigot.util.AuthUtil;
 import me.foncused.duoauth.spigot.util.BungeeUtil;
 import org.apache.logging.log4j.LogManager;
@@ -33,16 +52,24 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class DuoAuth extends JavaPlugin {
 
 	private Map<UUID, AuthCache> players;
+	private AuthGate gate;
 	private ConfigManager cm;
 	private LangManager lm;
 	private GoogleAuth ga;
+	private QrMaps maps;
 	private AuthDatabase db;
+	private ExpiryIndex index;
+	private ExpiryScheduler expiry;
+	private FailureSketch failures;
+	private HashExecutor hasher;
+	private PasswordHashers hashers;
 	public static final String PREFIX = "[" + ChatColor.DARK_GRAY + "Duo" + ChatColor.GREEN + "Auth" + ChatColor.RESET + "] ";
 
 	@Override
@@ -53,6 +80,10 @@ public class DuoAuth extends JavaPlugin {
 		this.registerConfig();
 		this.registerLang();
 		this.registerGoogleAuth();
+		this.registerQrMaps();
+		this.registerFailureSketch();
+		this.registerHashExecutor();
+		this.registerPasswordHashers();
 		this.registerUtils();
 		this.registerBungeeCord();
 		this.registerDatabase();
@@ -61,8 +92,31 @@ public class DuoAuth extends JavaPlugin {
 		this.registerRunnables();
 	}
 
+	@Override
+	public void onDisable() {
+		if(this.expiry != null) {
+			this.index.setListener(null);
+			this.expiry.stop();
+		}
+		if(this.ga != null) {
+			this.ga.close();
+		}
+		if(this.hasher != null) {
+			this.hasher.shutdown();
+		}
+		if(this.hashers != null) {
+			this.hashers.close();
+		}
+		if(this.db != null) {
+			this.db.close();
+		}
+	}
+
 	private void registerPlayers() {
 		this.players = new ConcurrentHashMap<>();
+		this.gate = new AuthGate();
+		// Players already online after a reload have no cache yet, so they keep the full checks
+		Bukkit.getOnlinePlayers().forEach(player -> this.gate.set(player.getUniqueId(), true));
 	}
 
 	private void loadDependencies() {
@@ -79,8 +133,19 @@ public class DuoAuth extends JavaPlugin {
 		this.cm = new ConfigManager(
 				config.getBoolean("bungeecord", false),
 				config.getInt("cost-factor", 15),
+				config.getInt("cost-factor-target", 500),
+				config.getBoolean("cost-factor-auto", false),
 				config.getInt("command.cooldown", 20),
+				config.getInt("command.burst", 1),
+				config.getInt("command.address-cooldown", 0),
+				config.getInt("command.address-burst", 5),
 				config.getInt("command.attempts", 5),
+				config.getInt("hashing.threads", 0),
+				config.getInt("hashing.queue-size", 100),
+				config.getString("hashing.algorithm", "argon2id"),
+				config.getInt("hashing.argon2.memory", 19456),
+				config.getInt("hashing.argon2.iterations", 2),
+				config.getInt("hashing.argon2.lanes", 4),
 				config.getString("password.default"),
 				config.getInt("password.min-length", 8),
 				config.getBoolean("password.both-cases", true),
@@ -88,14 +153,33 @@ public class DuoAuth extends JavaPlugin {
 				config.getBoolean("password.special-chars", true),
 				config.getString("password.special-charset", "@#$%^&+="),
 				config.getString("code.issuer", "DuoAuth"),
+				config.getInt("code.window", 1),
+				config.getInt("code.pending-limit", 1000),
+				config.getInt("code.pending-timeout", 10),
+				config.getInt("code.pool-size", 32),
+				config.getBoolean("code.qr-map", true),
 				config.getBoolean("deauth.ip-changes", true),
 				config.getInt("deauth.timeout", 72),
 				config.getBoolean("deauth.timeout-online", false),
 				config.getInt("deauth.timeout-check-heartbeat", 10),
 				config.getInt("unlock.timeout", 120),
 				config.getInt("unlock.timeout-check-heartbeat", 15),
-				//config.getString("database", "json"),
-				"json",
+				config.getString("expiry-mode", "scheduler"),
+				config.getInt("incremental.slice-size", 200),
+				config.getInt("incremental.time-budget", 5),
+				config.getString("database", "json"),
+				config.getInt("database-flush-interval", 1000),
+				config.getInt("database-lock-stripes", 64),
+				config.getBoolean("database-log-sync", true),
+				config.getString("mysql.host", "localhost"),
+				config.getInt("mysql.port", 3306),
+				config.getString("mysql.database", "duoauth"),
+				config.getString("mysql.username", "root"),
+				config.getString("mysql.password", ""),
+				config.getInt("mysql.pool-size", 8),
+				config.getInt("mysql.index-reload", 5),
+				config.getInt("subnet.failures", 0),
+				config.getInt("subnet.window", 10),
 				config.getBoolean("chat", false),
 				config.getBoolean("restrict-movement", false)
 		);
@@ -141,13 +225,15 @@ public class DuoAuth extends JavaPlugin {
 					this.translate(yaml.getString("please_save_qr", AuthMessage.PLEASE_SAVE_QR.toString())),
 					this.translate(yaml.getString("prefix_alert", AuthMessage.PREFIX_ALERT.toString())),
 					this.translate(yaml.getString("prefix_notify", AuthMessage.PREFIX_NOTIFY.toString())),
+					this.translate(yaml.getString("queued", AuthMessage.QUEUED.toString())),
 					this.translate(yaml.getString("reset_admin_success", AuthMessage.RESET_ADMIN_SUCCESS.toString())),
 					this.translate(yaml.getString("reset_failed", AuthMessage.RESET_FAILED.toString())),
 					this.translate(yaml.getString("reset_success", AuthMessage.RESET_SUCCESS.toString())),
 					this.translate(yaml.getString("session_expired", AuthMessage.SESSION_EXPIRED.toString())),
 					this.translate(yaml.getString("setting_up", AuthMessage.SETTING_UP.toString())),
 					this.translate(yaml.getString("setting_up_failed", AuthMessage.SETTING_UP_FAILED.toString())),
-					this.translate(yaml.getString("setting_up_success", AuthMessage.SETTING_UP_SUCCESS.toString()))
+					this.translate(yaml.getString("setting_up_success", AuthMessage.SETTING_UP_SUCCESS.toString())),
+					this.translate(yaml.getString("subnet_blocked", AuthMessage.SUBNET_BLOCKED.toString()))
 			);
 			return;
 		} catch(final IOException e) {
@@ -184,18 +270,59 @@ public class DuoAuth extends JavaPlugin {
 				this.translate(AuthMessage.PLEASE_SAVE_QR.toString()),
 				this.translate(AuthMessage.PREFIX_ALERT.toString()),
 				this.translate(AuthMessage.PREFIX_NOTIFY.toString()),
+				this.translate(AuthMessage.QUEUED.toString()),
 				this.translate(AuthMessage.RESET_ADMIN_SUCCESS.toString()),
 				this.translate(AuthMessage.RESET_FAILED.toString()),
 				this.translate(AuthMessage.RESET_SUCCESS.toString()),
 				this.translate(AuthMessage.SESSION_EXPIRED.toString()),
 				this.translate(AuthMessage.SETTING_UP.toString()),
 				this.translate(AuthMessage.SETTING_UP_FAILED.toString()),
-				this.translate(AuthMessage.SETTING_UP_SUCCESS.toString())
+				this.translate(AuthMessage.SETTING_UP_SUCCESS.toString()),
+				this.translate(AuthMessage.SUBNET_BLOCKED.toString())
 		);
 	}
 
 	private void registerGoogleAuth() {
-		this.ga = new GoogleAuth();
+		this.ga = new GoogleAuth(this.cm.getCodeWindow(), this.cm.getCodePendingLimit(), this.cm.getCodePendingTimeout(), this.cm.getCodePoolSize());
+		if(!(this.ga.isVerified())) {
+			AuthUtil.consoleSevere("TOTP verifier failed its known-answer test, falling back to the GoogleAuthenticator library...");
+		}
+	}
+
+	private void registerQrMaps() {
+		this.maps = new QrMaps();
+		if(!(this.maps.isEnabled())) {
+			AuthUtil.consoleSevere("QR encoder failed its known-answer test, QR maps have been disabled...");
+		}
+	}
+
+	private void registerFailureSketch() {
+		this.failures = new FailureSketch(this.cm.getSubnetFailures(), this.cm.getSubnetWindow());
+	}
+
+	private void registerHashExecutor() {
+		this.hasher = new HashExecutor(this.cm.getHashingThreads(), this.cm.getHashingQueueSize());
+	}
+
+	private void registerPasswordHashers() {
+		final PasswordHasher bcrypt = new BcryptHasher(this.cm);
+		final boolean tested = Argon2Hasher.selfTest();
+		final PasswordHasher argon2 = new Argon2Hasher(this.cm.getArgon2Iterations(), this.cm.getArgon2Memory(), this.cm.getArgon2Lanes(), this.hasher, tested);
+		if(!(tested)) {
+			// Argon2id digests stay registered so their logins end in an error instead of a failed attempt
+			AuthUtil.consoleSevere("Argon2id failed its known-answer test, hashing with bcrypt and refusing Argon2id logins...");
+			this.hashers = new PasswordHashers(bcrypt, argon2);
+			return;
+		}
+		switch(this.cm.getHashAlgorithm()) {
+			case BCRYPT:
+				this.hashers = new PasswordHashers(bcrypt, argon2);
+				break;
+			case ARGON2ID:
+			default:
+				this.hashers = new PasswordHashers(argon2, bcrypt);
+				break;
+		}
 	}
 
 	private void registerUtils() {
@@ -210,7 +337,83 @@ public class DuoAuth extends JavaPlugin {
 	}
 
 	private void registerDatabase() {
-		this.db = new AuthDatabase(this);
+		this.db = this.openDatabase();
+		final int interval = this.cm.getDatabaseFlushInterval();
+		if(interval > 0) {
+			this.db = new WriteBehindDatabase(this, this.db, interval);
+		}
+		this.index = new ExpiryIndex();
+		final long start = System.currentTimeMillis();
+		AuthUtil.console("Indexed " + this.index.build(this.db) + " users in " + (System.currentTimeMillis() - start) + " milliseconds");
+		this.db = new IndexedDatabase(this, this.db, this.index);
+	}
+
+	private AuthDatabase openDatabase() {
+		switch(this.cm.getDatabaseOption()) {
+			case SQLITE:
+				final SqliteDatabase sqlite = new SqliteDatabase(this);
+				if(sqlite.connect()) {
+					this.importJson(sqlite);
+					return sqlite;
+				}
+				AuthUtil.consoleSevere("Unable to connect to SQLite database, reverting to JSON...");
+				break;
+			case LOG:
+				final LogDatabase log = new LogDatabase(this, this.cm.isDatabaseLogSync());
+				if(log.open()) {
+					this.importJson(log);
+					return log;
+				}
+				AuthUtil.consoleSevere("Unable to open log database, reverting to JSON...");
+				break;
+			case MAPPED:
+				final MappedDatabase mapped = new MappedDatabase(this, this.cm.getDatabaseLockStripes());
+				if(mapped.open()) {
+					this.importJson(mapped);
+					return mapped;
+				}
+				AuthUtil.consoleSevere("Unable to open mapped database, reverting to JSON...");
+				break;
+			case MYSQL:
+				final MysqlDatabase mysql = new MysqlDatabase(
+						this,
+						this.cm.getMysqlHost(),
+						this.cm.getMysqlPort(),
+						this.cm.getMysqlDatabase(),
+						this.cm.getMysqlUsername(),
+						this.cm.getMysqlPassword(),
+						this.cm.getMysqlPoolSize()
+				);
+				if(mysql.connect()) {
+					this.importJson(mysql);
+					return mysql;
+				}
+				AuthUtil.consoleSevere("Unable to connect to MySQL database, reverting to JSON...");
+				break;
+			case JSON:
+			default:
+				break;
+		}
+		return this.openJson();
+	}
+
+	private JsonDatabase openJson() {
+		final JsonDatabase json = new JsonDatabase(this, this.cm.getDatabaseLockStripes());
+		json.migrate();
+		return json;
+	}
+
+	private void importJson(final AuthDatabase db) {
+		final Set<UUID> existing = db.readAll();
+		if(existing == null || (!(existing.isEmpty()))) {
+			return;
+		}
+		final AuthDatabase json = this.openJson();
+		final Set<UUID> uuids = json.readAll();
+		if(uuids != null && (!(uuids.isEmpty()))) {
+			AuthUtil.console("Importing " + uuids.size() + " users from JSON data (this may take a moment)...");
+			AuthUtil.console("Imported " + db.importAll(json) + " users from JSON data");
+		}
 	}
 
 	private void registerCommands() {
@@ -228,8 +431,28 @@ public class DuoAuth extends JavaPlugin {
 
 	private void registerRunnables() {
 		final AuthRunnable ar = new AuthRunnable(this);
-		ar.runTimeoutTask();
-		ar.runUnlockTask();
+		ar.runCredentialExpiryTask();
+		if(this.cm.getDatabaseOption() == DatabaseOption.MYSQL && this.cm.getMysqlIndexReload() > 0) {
+			ar.runIndexReloadTask();
+		}
+		switch(this.cm.getExpiryMode()) {
+			case SWEEP:
+				ar.runTimeoutTask();
+				ar.runUnlockTask();
+				break;
+			case INCREMENTAL:
+				new IncrementalSweeper(this, ar).start();
+				break;
+			case LAZY:
+				ar.runOnlineTimeoutTask();
+				break;
+			case SCHEDULER:
+			default:
+				this.expiry = new ExpiryScheduler(this, ar);
+				this.expiry.start();
+				this.index.setListener(this.expiry);
+				break;
+		}
 	}
 
 	public AuthCache getAuthCache(final UUID uuid) {
@@ -237,7 +460,15 @@ public class DuoAuth extends JavaPlugin {
 	}
 
 	public void setAuthCache(final UUID uuid, final AuthCache cache) {
-		this.players.put(uuid, cache);
+		final AuthCache previous = this.players.put(uuid, cache);
+		if(previous != null && previous != cache) {
+			previous.unbind();
+		}
+		cache.bind(uuid, this.gate);
+	}
+
+	public Set<UUID> getPlayers() {
+		return this.players.keySet();
 	}
 
 	public boolean containsPlayer(final UUID uuid) {
@@ -245,7 +476,15 @@ public class DuoAuth extends JavaPlugin {
 	}
 
 	public void removePlayer(final UUID uuid) {
-		this.players.remove(uuid);
+		final AuthCache cache = this.players.remove(uuid);
+		if(cache != null) {
+			cache.unbind();
+		}
+		this.gate.set(uuid, false);
+	}
+
+	public AuthGate getAuthGate() {
+		return this.gate;
 	}
 
 	public ConfigManager getConfigManager() {
@@ -256,14 +495,34 @@ public class DuoAuth extends JavaPlugin {
 		return this.lm;
 	}
 
+	public FailureSketch getFailureSketch() {
+		return this.failures;
+	}
+
+	public HashExecutor getHashExecutor() {
+		return this.hasher;
+	}
+
+	public PasswordHashers getPasswordHashers() {
+		return this.hashers;
+	}
+
 	public GoogleAuth getGoogleAuth() {
 		return this.ga;
 	}
 
+	public QrMaps getQrMaps() {
+		return this.maps;
+	}
+
 	public AuthDatabase getDatabase() {
 		return this.db;
 	}
 
+	public ExpiryIndex getExpiryIndex() {
+		return this.index;
+	}
+
 	private String translate(final String s) {
 		return ChatColor.translateAlternateColorCodes('&', s);
 	}
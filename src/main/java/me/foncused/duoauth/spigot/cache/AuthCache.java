@@ -1,6 +1,10 @@
 package me.foncused.duoauth.spigot.cache;
 
+import me.foncused.duoauth.spigot.lib.foncused.Totp;
+
 import java.net.InetAddress;
+import java.security.Key;
+import java.util.UUID;
 
 public class AuthCache {
 
@@ -9,6 +13,9 @@ public class AuthCache {
 	private boolean authed;
 	private int attempts;
 	private InetAddress ip;
+	private Key key;
+	private UUID uuid;
+	private AuthGate gate;
 
 	public AuthCache(final String password, final String secret, final boolean authed, final int attempts, final InetAddress ip) {
 		this.password = password;
@@ -32,6 +39,19 @@ public class AuthCache {
 
 	public synchronized void setSecret(final String code) {
 		this.secret = code;
+		this.key = null;
+	}
+
+	// The decoded secret is kept so code checks skip Base32 decoding, null if the secret is invalid
+	public synchronized Key getKey() {
+		if(this.key == null && this.secret != null) {
+			try {
+				this.key = Totp.decode(this.secret);
+			} catch(final IllegalArgumentException e) {
+				return null;
+			}
+		}
+		return this.key;
 	}
 
 	public synchronized boolean isAuthed() {
@@ -40,6 +60,20 @@ public class AuthCache {
 
 	public synchronized void setAuthed(final boolean authed) {
 		this.authed = authed;
+		if(this.gate != null) {
+			this.gate.set(this.uuid, !(authed));
+		}
+	}
+
+	// Keeps the gate in step with this cache while it is the one held for the player
+	public synchronized void bind(final UUID uuid, final AuthGate gate) {
+		this.uuid = uuid;
+		this.gate = gate;
+		gate.set(uuid, !(this.authed));
+	}
+
+	public synchronized void unbind() {
+		this.gate = null;
 	}
 
 	public synchronized int getAttempts() {
@@ -0,0 +1,35 @@
+package me.foncused.duoauth.spigot.cache;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+public class AuthGate {
+
+	// Copied on write, so listeners read the whole set with a single volatile read and no locking
+	private volatile Set<UUID> gated;
+
+	public AuthGate() {
+		this.gated = Collections.emptySet();
+	}
+
+	public boolean isGated(final UUID uuid) {
+		final Set<UUID> gated = this.gated;
+		return (!(gated.isEmpty())) && gated.contains(uuid);
+	}
+
+	public synchronized void set(final UUID uuid, final boolean gated) {
+		if(gated == this.gated.contains(uuid)) {
+			return;
+		}
+		final Set<UUID> copy = new HashSet<>(this.gated);
+		if(gated) {
+			copy.add(uuid);
+		} else {
+			copy.remove(uuid);
+		}
+		this.gated = copy.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(copy);
+	}
+
+}
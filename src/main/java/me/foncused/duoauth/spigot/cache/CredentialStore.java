@@ -0,0 +1,111 @@
+package me.foncused.duoauth.spigot.cache;
+
+import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CredentialStore {
+
+	private final Map<UUID, Entry> entries;
+	private final Queue<Entry> queue;
+	private final int maxSize;
+	private final long ttl;
+	private final AtomicLong evictions;
+	private final AtomicLong expirations;
+
+	public CredentialStore(final int maxSize, final int ttl) {
+		this.entries = new ConcurrentHashMap<>();
+		this.queue = new ArrayDeque<>();
+		this.maxSize = maxSize;
+		this.ttl = ttl * 60000L;
+		this.evictions = new AtomicLong();
+		this.expirations = new AtomicLong();
+	}
+
+	public GoogleAuthenticatorKey put(final UUID uuid, final GoogleAuthenticatorKey key) {
+		final Entry entry = new Entry(uuid, key, System.currentTimeMillis() + this.ttl);
+		synchronized(this.queue) {
+			this.entries.put(uuid, entry);
+			// Every entry lives for the same time, so the queue is ordered by deadline as well as by insertion
+			this.queue.add(entry);
+			// Only live entries count toward the limit, stale ones ahead of them are discarded without being counted
+			Entry head;
+			while(this.entries.size() > this.maxSize && (head = this.queue.poll()) != null) {
+				if(this.drop(head)) {
+					this.evictions.incrementAndGet();
+				}
+			}
+			if(this.queue.size() - this.maxSize > this.maxSize) {
+				this.queue.removeIf(this::isStale);
+			}
+		}
+		return key;
+	}
+
+	public GoogleAuthenticatorKey get(final UUID uuid) {
+		final Entry entry = this.entries.get(uuid);
+		return entry == null || entry.deadline <= System.currentTimeMillis() ? null : entry.key;
+	}
+
+	public boolean contains(final UUID uuid) {
+		return this.get(uuid) != null;
+	}
+
+	public void remove(final UUID uuid) {
+		// The queued entry is left to expire or be discarded on a later put, which keeps removal constant time
+		this.entries.remove(uuid);
+	}
+
+	public void expire() {
+		final long now = System.currentTimeMillis();
+		synchronized(this.queue) {
+			Entry head;
+			while((head = this.queue.peek()) != null && head.deadline <= now) {
+				if(this.drop(this.queue.poll())) {
+					this.expirations.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	private boolean isStale(final Entry entry) {
+		return this.entries.get(entry.uuid) != entry;
+	}
+
+	private boolean drop(final Entry entry) {
+		// Entries replaced by a newer put or removed by the player are already gone from the map
+		return this.entries.remove(entry.uuid, entry);
+	}
+
+	public int getSize() {
+		return this.entries.size();
+	}
+
+	public long getEvictions() {
+		return this.evictions.get();
+	}
+
+	public long getExpirations() {
+		return this.expirations.get();
+	}
+
+	private static class Entry {
+
+		private final UUID uuid;
+		private final GoogleAuthenticatorKey key;
+		private final long deadline;
+
+		private Entry(final UUID uuid, final GoogleAuthenticatorKey key, final long deadline) {
+			this.uuid = uuid;
+			this.key = key;
+			this.deadline = deadline;
+		}
+
+	}
+
+}
@@ -0,0 +1,93 @@
+package me.foncused.duoauth.spigot.cache;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class FailureSketch {
+
+	private static final int DEPTH = 4;
+	private static final int WIDTH = 2048;
+	private static final int SLOTS = 6;
+	private static final long[] SEEDS = {
+			0x9E3779B97F4A7C15L,
+			0xC2B2AE3D27D4EB4FL,
+			0x165667B19E3779F9L,
+			0xD6E8FEB86659FD93L
+	};
+	private static final long IPV4 = 1L << 62;
+	private final AtomicIntegerArray counts;
+	private final AtomicLongArray epochs;
+	private final long slotLength;
+	private final int threshold;
+
+	public FailureSketch(final int threshold, final int window) {
+		// The window is split into slots that are recycled as it slides, so memory never grows with the number of addresses
+		this.counts = new AtomicIntegerArray(SLOTS * DEPTH * WIDTH);
+		this.epochs = new AtomicLongArray(SLOTS);
+		for(int slot = 0; slot < SLOTS; slot++) {
+			this.epochs.set(slot, -1);
+		}
+		this.slotLength = Math.max(1, window * 60000L / SLOTS);
+		this.threshold = threshold;
+	}
+
+	public void add(final InetAddress address) {
+		if(this.threshold <= 0) {
+			return;
+		}
+		final long epoch = System.currentTimeMillis() / this.slotLength;
+		final int slot = (int) (epoch % SLOTS);
+		final long current = this.epochs.get(slot);
+		if(current != epoch && this.epochs.compareAndSet(slot, current, epoch)) {
+			final int start = slot * DEPTH * WIDTH;
+			for(int i = start; i < start + DEPTH * WIDTH; i++) {
+				this.counts.set(i, 0);
+			}
+		}
+		final long key = this.toKey(address);
+		for(int row = 0; row < DEPTH; row++) {
+			this.counts.incrementAndGet(this.index(slot, row, key));
+		}
+	}
+
+	public int estimate(final InetAddress address) {
+		final long epoch = System.currentTimeMillis() / this.slotLength;
+		final long key = this.toKey(address);
+		int estimate = Integer.MAX_VALUE;
+		for(int row = 0; row < DEPTH; row++) {
+			int sum = 0;
+			for(int slot = 0; slot < SLOTS; slot++) {
+				if(epoch - this.epochs.get(slot) < SLOTS) {
+					sum += this.counts.get(this.index(slot, row, key));
+				}
+			}
+			estimate = Math.min(estimate, sum);
+		}
+		return estimate;
+	}
+
+	public boolean isBlocked(final InetAddress address) {
+		return this.threshold > 0 && this.estimate(address) >= this.threshold;
+	}
+
+	private int index(final int slot, final int row, final long key) {
+		long hash = key ^ SEEDS[row];
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		hash ^= hash >>> 31;
+		return (slot * DEPTH + row) * WIDTH + (int) (hash & (WIDTH - 1));
+	}
+
+	// IPv4 addresses are grouped by /24 and IPv6 addresses by /64
+	private long toKey(final InetAddress address) {
+		final byte[] bytes = address.getAddress();
+		if(address instanceof Inet4Address) {
+			return IPV4 | ((ByteBuffer.wrap(bytes).getInt() & 0xFFFFFFFFL) >>> 8);
+		}
+		return ByteBuffer.wrap(bytes).getLong();
+	}
+
+}
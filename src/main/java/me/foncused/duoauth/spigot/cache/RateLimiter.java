@@ -0,0 +1,81 @@
+package me.foncused.duoauth.spigot.cache;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RateLimiter {
+
+	private static final int PRUNE_EVERY = 1024;
+	private final Map<UUID, AtomicLong> users;
+	private final Map<Long, AtomicLong> addresses;
+	private final long userInterval;
+	private final long userTolerance;
+	private final long addressInterval;
+	private final long addressTolerance;
+	private final AtomicInteger acquisitions;
+
+	public RateLimiter(final int userCooldown, final int userBurst, final int addressCooldown, final int addressBurst) {
+		this.users = new ConcurrentHashMap<>();
+		this.addresses = new ConcurrentHashMap<>();
+		this.userInterval = userCooldown * 1000L;
+		this.userTolerance = this.userInterval * (userBurst - 1);
+		this.addressInterval = addressCooldown * 1000L;
+		this.addressTolerance = this.addressInterval * (addressBurst - 1);
+		this.acquisitions = new AtomicInteger();
+	}
+
+	public boolean tryAcquire(final UUID uuid, final InetAddress address) {
+		final long now = System.currentTimeMillis();
+		if(this.acquisitions.incrementAndGet() % PRUNE_EVERY == 0) {
+			this.prune(now);
+		}
+		// The shared address bucket goes first, so a flood from a shared network cannot drain a user's own bucket
+		final AtomicLong shared = this.addressInterval > 0 ? this.addresses.computeIfAbsent(this.toKey(address), key -> new AtomicLong()) : null;
+		if(shared != null && (!(this.take(shared, now, this.addressInterval, this.addressTolerance)))) {
+			return false;
+		}
+		if(!(this.take(this.users.computeIfAbsent(uuid, key -> new AtomicLong()), now, this.userInterval, this.userTolerance))) {
+			// A user who is cooling down should not use up the address allowance of everyone sharing it
+			if(shared != null) {
+				shared.addAndGet(-(this.addressInterval));
+			}
+			return false;
+		}
+		return true;
+	}
+
+	// Each bucket is the single timestamp at which it becomes full again, so refill needs no scheduled task
+	private boolean take(final AtomicLong bucket, final long now, final long interval, final long tolerance) {
+		while(true) {
+			final long full = bucket.get();
+			final long start = Math.max(full, now);
+			if(start - now > tolerance) {
+				return false;
+			}
+			if(bucket.compareAndSet(full, start + interval)) {
+				return true;
+			}
+		}
+	}
+
+	private void prune(final long now) {
+		this.users.values().removeIf(bucket -> bucket.get() <= now);
+		this.addresses.values().removeIf(bucket -> bucket.get() <= now);
+	}
+
+	// IPv6 users are usually handed a whole /64, so that is treated as one address
+	private long toKey(final InetAddress address) {
+		final byte[] bytes = address.getAddress();
+		if(address instanceof Inet4Address) {
+			return ByteBuffer.wrap(bytes).getInt() & 0xFFFFFFFFL;
+		}
+		return ByteBuffer.wrap(bytes).getLong();
+	}
+
+}
@@ -4,14 +4,20 @@ import co.aikar.taskchain.TaskChain;
 import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
 import me.foncused.duoauth.spigot.DuoAuth;
 import me.foncused.duoauth.spigot.cache.AuthCache;
+import me.foncused.duoauth.spigot.cache.CredentialStore;
+import me.foncused.duoauth.spigot.cache.FailureSketch;
+import me.foncused.duoauth.spigot.cache.RateLimiter;
 import me.foncused.duoauth.spigot.config.ConfigManager;
 import me.foncused.duoauth.spigot.config.LangManager;
 import me.foncused.duoauth.spigot.database.AuthDatabase;
+import me.foncused.duoauth.spigot.database.AuthRecord;
 import me.foncused.duoauth.spigot.enumerable.AuthMessage;
 import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+import me.foncused.duoauth.spigot.hash.HashExecutor;
+import me.foncused.duoauth.spigot.hash.PasswordHashers;
 import me.foncused.duoauth.spigot.lib.aikar.TaskChainManager;
-import me.foncused.duoauth.spigot.lib.jeremyh.Bcrypt;
 import me.foncused.duoauth.spigot.lib.wstrange.GoogleAuth;
+import me.foncused.duoauth.spigot.map.QrMaps;
 import me.foncused.duoauth.spigot.util.AuthUtil;
 import me.foncused.duoauth.spigot.util.BungeeUtil;
 import net.md_5.bungee.api.chat.ClickEvent;
@@ -25,13 +31,18 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import java.net.InetAddress;
-import java.net.UnknownHostException;
+import java.security.Key;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 public class AuthCommand implements CommandExecutor {
@@ -40,18 +51,31 @@ public class AuthCommand implements CommandExecutor {
 	private final ConfigManager cm;
 	private final LangManager lm;
 	private final GoogleAuth ga;
+	private final QrMaps maps;
 	private final AuthDatabase db;
 	private final Set<UUID> auths;
-	private final Set<UUID> cooldowns;
+	private final RateLimiter limiter;
+	private final FailureSketch failures;
+	private final HashExecutor hasher;
+	private final PasswordHashers hashers;
 
 	public AuthCommand(final DuoAuth plugin) {
 		this.plugin = plugin;
 		this.cm = this.plugin.getConfigManager();
 		this.lm = this.plugin.getLangManager();
 		this.ga = this.plugin.getGoogleAuth();
+		this.maps = this.plugin.getQrMaps();
 		this.db = this.plugin.getDatabase();
 		this.auths = new HashSet<>();
-		this.cooldowns = new HashSet<>();
+		this.failures = this.plugin.getFailureSketch();
+		this.hasher = this.plugin.getHashExecutor();
+		this.hashers = this.plugin.getPasswordHashers();
+		this.limiter = new RateLimiter(
+				this.cm.getCommandCooldown(),
+				this.cm.getCommandBurst(),
+				this.cm.getCommandAddressCooldown(),
+				this.cm.getCommandAddressBurst()
+		);
 	}
 
 	public boolean onCommand(final CommandSender sender, final Command cmd, final String label, final String[] args) {
@@ -63,7 +87,6 @@ public class AuthCommand implements CommandExecutor {
 					final AuthCache cache = this.plugin.getAuthCache(uuid);
 					final String u = uuid.toString();
 					final String name = player.getName();
-					final int commandCooldown = this.cm.getCommandCooldown();
 					switch(args.length) {
 						case 1:
 							final String args0 = args[0].toLowerCase();
@@ -71,21 +94,22 @@ public class AuthCommand implements CommandExecutor {
 								this.printUsage(player);
 								break;
 							}
+							if(args0.equals("metrics")) {
+								if(player.hasPermission("duoauth.admin")) {
+									this.printMetrics(player);
+								} else {
+									AuthUtil.alertOne(player, this.lm.getNoPermission());
+								}
+								break;
+							}
 							TaskChainManager.newChain()
 									.asyncFirst(() -> this.db.contains(uuid))
 									.syncLast(contained -> {
 										if(contained) {
 											if(cache != null) {
 												if(cache.isAuthed()) {
-													if(player.hasPermission("duoauth.bypass") || (!(this.cooldowns.contains(uuid)))) {
+													if(player.hasPermission("duoauth.bypass") || this.limiter.tryAcquire(uuid, AuthUtil.getPlayerAddress(player))) {
 														if(!(this.auths.contains(uuid))) {
-															this.cooldowns.add(uuid);
-															new BukkitRunnable() {
-																@Override
-																public void run() {
-																	cooldowns.remove(uuid);
-																}
-															}.runTaskLater(this.plugin, commandCooldown * 20);
 															switch(args0) {
 																case "generate":
 																	AuthUtil.alertOne(player, this.lm.getNoGenerate());
@@ -147,27 +171,21 @@ public class AuthCommand implements CommandExecutor {
 												AuthUtil.alertOne(player, this.lm.getPlayerNotDb());
 											}
 										} else if(args0.equals("generate")) {
-											GoogleAuthenticatorKey key = this.ga.getCreds(uuid);
+											final GoogleAuthenticatorKey key = this.ga.getCreds(uuid);
 											if(key == null) {
 												AuthUtil.alertOne(player, this.lm.getGenerating());
 												AuthUtil.notify("Generating authentication secret for user " + u + " (" + name + ")...");
-												key = this.ga.generateRfc6238Credentials(uuid);
+												TaskChainManager.newChain()
+														.asyncFirst(() -> this.ga.generateRfc6238Credentials(uuid))
+														.syncLast(generated -> {
+															if(player.isOnline()) {
+																this.sendSecret(player, name, generated);
+															}
+														})
+														.execute();
+											} else {
+												this.sendSecret(player, name, key);
 											}
-											AuthUtil.alertOne(player, AuthMessage.SECRET_KEY.toString() + key.getKey());
-											final TextComponent tc = new TextComponent(AuthMessage.QR.toString() + "Click me!");
-											tc.setClickEvent(
-													new ClickEvent(
-															ClickEvent.Action.OPEN_URL,
-															this.ga.getAuthUrl(this.cm.getCodeIssuer(), name, key)
-													)
-											);
-											tc.setHoverEvent(
-													new HoverEvent(
-															HoverEvent.Action.SHOW_TEXT,
-															new ComponentBuilder(this.lm.getPleaseSaveQr()).create()
-													)
-											);
-											AuthUtil.alertOneTextComponent(player, tc);
 										} else {
 											AuthUtil.alertOne(player, this.lm.getPlayerNotDb());
 										}
@@ -189,7 +207,7 @@ public class AuthCommand implements CommandExecutor {
 															.asyncFirst(() -> this.db.contains(targetId)
 																	&& (!(this.db.readProperty(targetId, DatabaseProperty.AUTHED).getAsBoolean()))
 																	&& this.db.writeProperty(targetId, DatabaseProperty.AUTHED, true)
-																	&& this.db.writeProperty(targetId, DatabaseProperty.TIMESTAMP, AuthUtil.getFormattedTime(AuthUtil.getDateFormat())))
+																	&& this.db.writeProperty(targetId, DatabaseProperty.TIMESTAMP, System.currentTimeMillis()))
 															.syncLast(authed -> {
 																if(authed) {
 																	final AuthCache c = this.plugin.getAuthCache(targetId);
@@ -207,6 +225,7 @@ public class AuthCommand implements CommandExecutor {
 																		AuthUtil.alertOne(targetOnline, this.lm.getAllowAdminSuccess());
 																	}
 																	this.ga.removeCreds(uuid);
+																	this.maps.evict(targetId);
 																	AuthUtil.alertOne(player, ChatColor.GREEN + "Allowing of user " + target + " was successful.");
 																	AuthUtil.notify("Allowing of user " + id + " (" + target + ") was successful");
 																} else {
@@ -319,23 +338,10 @@ public class AuthCommand implements CommandExecutor {
 													if(c != null && targetOffline.isOnline()) {
 														AuthUtil.alertOne(player, AuthUtil.logCache(target, c));
 													} else {
-														final TaskChain chain = TaskChainManager.newChain();
-														chain
-																.async(() -> {
-																	if(this.db.contains(targetId)) {
-																		chain.setTaskData("password", this.db.readProperty(targetId, DatabaseProperty.PASSWORD).getAsString());
-																		chain.setTaskData("secret", this.db.readProperty(targetId, DatabaseProperty.SECRET).getAsString());
-																		chain.setTaskData("authed", this.db.readProperty(targetId, DatabaseProperty.AUTHED).getAsBoolean());
-																		chain.setTaskData("attempts", this.db.readProperty(targetId, DatabaseProperty.ATTEMPTS).getAsInt());
-																		try {
-																			chain.setTaskData("ip", InetAddress.getByName(this.db.readProperty(targetId, DatabaseProperty.IP).getAsString()));
-																		} catch(final UnknownHostException e) {
-																			e.printStackTrace();
-																		}
-																	}
-																})
-																.sync(() -> {
-																	final String password = (String) chain.getTaskData("password");
+														TaskChainManager.newChain()
+																.asyncFirst(() -> this.db.contains(targetId) ? this.db.readRecord(targetId) : null)
+																.syncLast(record -> {
+																	final String password = (record != null) ? record.getPassword() : null;
 																	if(password != null && (!(password.isEmpty()))) {
 																		AuthUtil.alertOne(
 																				player,
@@ -343,10 +349,10 @@ public class AuthCommand implements CommandExecutor {
 																						target,
 																						new AuthCache(
 																								password,
-																								(String) chain.getTaskData("secret"),
-																								(boolean) chain.getTaskData("authed"),
-																								(int) chain.getTaskData("attempts"),
-																								(InetAddress) chain.getTaskData("ip")
+																								record.getSecret(),
+																								record.isAuthed(),
+																								record.getAttempts(),
+																								record.getIp()
 																						)
 																				)
 																		);
@@ -386,19 +392,11 @@ public class AuthCommand implements CommandExecutor {
 									)) {
 										final String code = args[1];
 										if(code.length() == 6 && code.matches("^[0-9]+$")) {
-											if(player.hasPermission("duoauth.bypass") || (!(this.cooldowns.contains(uuid)))) {
+											if(player.hasPermission("duoauth.bypass") || this.limiter.tryAcquire(uuid, AuthUtil.getPlayerAddress(player))) {
 												if(!(this.auths.contains(uuid))) {
-													this.cooldowns.add(uuid);
-													new BukkitRunnable() {
-														@Override
-														public void run() {
-															cooldowns.remove(uuid);
-														}
-													}.runTaskLater(this.plugin, commandCooldown * 20);
 													this.auths.add(uuid);
 													final InetAddress ip = AuthUtil.getPlayerAddress(player);
 													final int commandAttempts = this.cm.getCommandAttempts();
-													final int costFactor = this.cm.getCostFactor();
 													final TaskChain chain = TaskChainManager.newChain();
 													chain
 															.sync(() -> {
@@ -423,20 +421,37 @@ public class AuthCommand implements CommandExecutor {
 																					AuthUtil.notify("Setting up authentication for user " + u + " (" + name + ")...");
 																				})
 																				.execute();
-																		final String digest = AuthUtil.getSecureBCryptHash(
-																				AuthUtil.getSecureSHA512Hash(password),
-																				costFactor
-																		);
+																		final String digest = this.hash(player, () -> this.hashers.hash(password));
+																		if(digest == null) {
+																			return;
+																		}
 																		chain.setTaskData("digest", digest);
 																		chain.setTaskData("secret", secret);
-																		chain.setTaskData("written", this.db.write(uuid, digest, secret, true, 0, ip));
+																		chain.setTaskData("written", this.db.writeRecord(
+																				uuid,
+																				new AuthRecord(
+																						digest,
+																						secret,
+																						true,
+																						0,
+																						ip,
+																						System.currentTimeMillis()
+																				)
+																		));
 																	} else {
 																		TaskChainManager.newChain().sync(() -> AuthUtil.alertOne(player, this.lm.getGenerate())).execute();
 																	}
 																} else {
-																	int attempts = (chain.hasTaskData("attempts"))
-																			? (int) chain.getTaskData("attempts")
-																			: this.db.readProperty(uuid, DatabaseProperty.ATTEMPTS).getAsInt();
+																	if(!(chain.hasTaskData("attempts"))) {
+																		final AuthRecord record = this.db.readRecord(uuid);
+																		if(record == null) {
+																			return;
+																		}
+																		chain.setTaskData("password", record.getPassword());
+																		chain.setTaskData("secret", record.getSecret());
+																		chain.setTaskData("attempts", record.getAttempts());
+																	}
+																	final int attempts = (int) chain.getTaskData("attempts");
 																	if(commandAttempts != 0 && attempts >= commandAttempts) {
 																		TaskChainManager.newChain()
 																				.sync(() -> {
@@ -453,19 +468,20 @@ public class AuthCommand implements CommandExecutor {
 																					AuthUtil.notify("Authenticating user " + u + " (" + name + ")...");
 																				})
 																				.execute();
-																		final String digest = (chain.hasTaskData("password")
-																				? (String) chain.getTaskData("password")
-																				: this.db.readProperty(uuid, DatabaseProperty.PASSWORD).getAsString()
-																		);
-																		final String secret = (chain.hasTaskData("secret")
-																				? (String) chain.getTaskData("secret")
-																				: this.db.readProperty(uuid, DatabaseProperty.SECRET).getAsString()
-																		);
-																		final boolean bcrypt = Bcrypt.checkpw(AuthUtil.getSecureSHA512Hash(password), digest);
+																		final String digest = (String) chain.getTaskData("password");
+																		final String secret = (String) chain.getTaskData("secret");
+																		final Boolean bcrypt = this.hash(player, () -> this.hashers.verify(password, digest));
+																		if(bcrypt == null) {
+																			return;
+																		}
 																		chain.setTaskData("bcrypt", bcrypt);
-																		final boolean rfc6238 = this.ga.authorize(secret, Integer.parseInt(code));
+																		final Key key = cache != null && secret.equals(cache.getSecret()) ? cache.getKey() : null;
+																		final boolean rfc6238 = this.ga.authorize(secret, key, Integer.parseInt(code));
 																		chain.setTaskData("rfc6238", rfc6238);
 																		chain.setTaskData("result", bcrypt && rfc6238);
+																		if(bcrypt && rfc6238 && this.hashers.needsRehash(digest)) {
+																			this.rehash(uuid, password, cache);
+																		}
 																	}
 																}
 															})
@@ -487,6 +503,7 @@ public class AuthCommand implements CommandExecutor {
 																		AuthUtil.alertOne(player, this.lm.getSettingUpSuccess());
 																		AuthUtil.notify("User " + u + " (" + name + ") successfully set up authentication");
 																		this.ga.removeCreds(uuid);
+																		this.maps.evict(uuid);
 																	} else {
 																		AuthUtil.alertOne(player, this.lm.getSettingUpFailed());
 																		AuthUtil.notify("User " + u + " (" + name + ") failed to set up authentication");
@@ -496,10 +513,12 @@ public class AuthCommand implements CommandExecutor {
 																		AuthUtil.alertOne(player, this.lm.getAuthenticatingSuccess());
 																		TaskChainManager.newChain()
 																				.async(() -> {
-																					this.db.writeProperty(uuid, DatabaseProperty.AUTHED, true);
-																					this.db.writeProperty(uuid, DatabaseProperty.ATTEMPTS, 0);
-																					this.db.writeProperty(uuid, DatabaseProperty.IP, ip);
-																					this.db.writeProperty(uuid, DatabaseProperty.TIMESTAMP, AuthUtil.getFormattedTime(AuthUtil.getDateFormat()));
+																					final Map<DatabaseProperty, Object> properties = new EnumMap<>(DatabaseProperty.class);
+																					properties.put(DatabaseProperty.AUTHED, true);
+																					properties.put(DatabaseProperty.ATTEMPTS, 0);
+																					properties.put(DatabaseProperty.IP, ip);
+																					properties.put(DatabaseProperty.TIMESTAMP, System.currentTimeMillis());
+																					this.db.writeProperties(uuid, properties);
 																				})
 																				.execute();
 																		if(cache != null && player.isOnline()) {
@@ -507,6 +526,7 @@ public class AuthCommand implements CommandExecutor {
 																			cache.setAttempts(0);
 																		}
 																		this.ga.removeCreds(uuid);
+																		this.maps.evict(uuid);
 																		if(this.cm.isBungee()) {
 																			BungeeUtil.sendMessage(player, "Remove");
 																		}
@@ -515,6 +535,7 @@ public class AuthCommand implements CommandExecutor {
 																		AuthUtil.alertOne(player, this.lm.getAuthenticatingFailed());
 																		final String error = this.getError(chain);
 																		if(!(player.hasPermission("duoauth.unlimited"))) {
+																			this.failures.add(ip);
 																			TaskChainManager.newChain()
 																					.syncFirst(() -> {
 																						if(cache != null && player.isOnline()) {
@@ -611,6 +632,88 @@ public class AuthCommand implements CommandExecutor {
 		return " (???)";
 	}
 
+	private <T> T hash(final Player player, final Callable<T> task) {
+		final Future<T> future;
+		try {
+			future = this.hasher.submit(task);
+		} catch(final RejectedExecutionException e) {
+			TaskChainManager.newChain().sync(() -> AuthUtil.alertOne(player, this.lm.getMustWait())).execute();
+			return null;
+		}
+		final int position = this.hasher.getPosition(future);
+		if(position > 0) {
+			TaskChainManager.newChain()
+					.sync(() -> AuthUtil.alertOne(player, this.lm.getQueued().replace("%position%", Integer.toString(position))))
+					.execute();
+		}
+		try {
+			return future.get();
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(final ExecutionException e) {
+			e.printStackTrace();
+			TaskChainManager.newChain().sync(() -> AuthUtil.alertOne(player, this.lm.getBug())).execute();
+		}
+		return null;
+	}
+
+	private void rehash(final UUID uuid, final String password, final AuthCache cache) {
+		try {
+			this.hasher.submit(() -> {
+				final String digest = this.hashers.hash(password);
+				if(this.db.writeProperty(uuid, DatabaseProperty.PASSWORD, digest)) {
+					if(cache != null) {
+						cache.setPassword(digest);
+					}
+					AuthUtil.console("Rehashed password digest for user " + uuid);
+				}
+				return digest;
+			});
+		} catch(final RejectedExecutionException e) {
+			// The digest is left as is and rehashed on a later login
+		}
+	}
+
+	private void sendSecret(final Player player, final String name, final GoogleAuthenticatorKey key) {
+		AuthUtil.alertOne(player, AuthMessage.SECRET_KEY.toString() + key.getKey());
+		final TextComponent tc = new TextComponent(AuthMessage.QR.toString() + "Click me!");
+		tc.setClickEvent(
+				new ClickEvent(
+						ClickEvent.Action.OPEN_URL,
+						this.ga.getAuthUrl(this.cm.getCodeIssuer(), name, key)
+				)
+		);
+		tc.setHoverEvent(
+				new HoverEvent(
+						HoverEvent.Action.SHOW_TEXT,
+						new ComponentBuilder(this.lm.getPleaseSaveQr()).create()
+				)
+		);
+		AuthUtil.alertOneTextComponent(player, tc);
+		if(this.cm.isCodeQrMap() && this.maps.give(player, key.getKey(), this.ga.getAuthTotpUrl(this.cm.getCodeIssuer(), name, key))) {
+			AuthUtil.alertOne(player, AuthMessage.QR_MAP.toString() + "Check your inventory!");
+		}
+	}
+
+	private void printMetrics(final Player player) {
+		player.sendMessage(ChatColor.DARK_GRAY + "" + ChatColor.STRIKETHROUGH + "---------------------------------------------");
+		player.sendMessage("    " + DuoAuth.PREFIX + ChatColor.GRAY + "Hashing metrics");
+		player.sendMessage(ChatColor.RED + "    Active: " + ChatColor.GRAY + this.hasher.getActiveCount());
+		player.sendMessage(ChatColor.RED + "    Queue depth: " + ChatColor.GRAY + this.hasher.getQueueDepth());
+		player.sendMessage(ChatColor.RED + "    Completed: " + ChatColor.GRAY + this.hasher.getCompleted());
+		player.sendMessage(ChatColor.RED + "    Rejected: " + ChatColor.GRAY + this.hasher.getRejected());
+		player.sendMessage(ChatColor.RED + "    Average wait: " + ChatColor.GRAY + this.hasher.getAverageWait() + " ms");
+		player.sendMessage(ChatColor.RED + "    Maximum wait: " + ChatColor.GRAY + this.hasher.getMaxWait() + " ms");
+		final CredentialStore creds = this.ga.getCredentialStore();
+		player.sendMessage("    " + DuoAuth.PREFIX + ChatColor.GRAY + "Pending secret metrics");
+		player.sendMessage(ChatColor.RED + "    Pending: " + ChatColor.GRAY + creds.getSize());
+		player.sendMessage(ChatColor.RED + "    Expired: " + ChatColor.GRAY + creds.getExpirations());
+		player.sendMessage(ChatColor.RED + "    Evicted: " + ChatColor.GRAY + creds.getEvictions());
+		player.sendMessage(ChatColor.RED + "    Pooled: " + ChatColor.GRAY + this.ga.getSecretPool().getSize());
+		player.sendMessage(ChatColor.RED + "    Pool misses: " + ChatColor.GRAY + this.ga.getSecretPool().getMisses());
+		player.sendMessage(ChatColor.DARK_GRAY + "" + ChatColor.STRIKETHROUGH + "---------------------------------------------");
+	}
+
 	private void printUsage(final Player player) {
 		player.sendMessage(ChatColor.DARK_GRAY + "" + ChatColor.STRIKETHROUGH + "---------------------------------------------");
 		player.sendMessage("    " + DuoAuth.PREFIX + ChatColor.DARK_GRAY + "v" + this.plugin.getDescription().getVersion() + " by foncused");
@@ -628,6 +731,7 @@ public class AuthCommand implements CommandExecutor {
 		if(admin) {
 			player.sendMessage(ChatColor.RED + "    /auth reset <player>" + ChatColor.GRAY + " - reset a player's credentials");
 			player.sendMessage(ChatColor.RED + "    /auth check <player>" + ChatColor.GRAY + " - check a player's auth status");
+			player.sendMessage(ChatColor.RED + "    /auth metrics" + ChatColor.GRAY + " - view hashing metrics");
 		}
 		player.sendMessage(ChatColor.RED + "    /auth <password> <code>" + ChatColor.GRAY + " - set up or attempt authentication");
 		player.sendMessage(ChatColor.DARK_GRAY + "" + ChatColor.STRIKETHROUGH + "---------------------------------------------");
@@ -1,15 +1,27 @@
 package me.foncused.duoauth.spigot.config;
 
 import me.foncused.duoauth.spigot.enumerable.DatabaseOption;
+import me.foncused.duoauth.spigot.enumerable.ExpiryMode;
+import me.foncused.duoauth.spigot.enumerable.HashAlgorithm;
+import me.foncused.duoauth.spigot.hash.CostCalibrator;
 import me.foncused.duoauth.spigot.lib.aikar.TaskChainManager;
 import me.foncused.duoauth.spigot.util.AuthUtil;
 
 public class ConfigManager {
 
 	private final boolean bungeecord;
-	private final int costFactor;
+	private int costFactor;
 	private final int commandCooldown;
+	private final int commandBurst;
+	private final int commandAddressCooldown;
+	private final int commandAddressBurst;
 	private final int commandAttempts;
+	private final int hashingThreads;
+	private final int hashingQueueSize;
+	private final HashAlgorithm hashAlgorithm;
+	private final int argon2Memory;
+	private final int argon2Iterations;
+	private final int argon2Lanes;
 	private String passwordDefault;
 	private final int passwordMinLength;
 	private final boolean passwordBothCases;
@@ -17,13 +29,33 @@ public class ConfigManager {
 	private final boolean passwordSpecialChars;
 	private final String passwordSpecialCharset;
 	private final String codeIssuer;
+	private final int codeWindow;
+	private final int codePendingLimit;
+	private final int codePendingTimeout;
+	private final int codePoolSize;
+	private final boolean codeQrMap;
 	private final boolean deauthAddressChanges;
 	private final int deauthTimeout;
 	private final boolean deauthTimeoutOnline;
 	private final int deauthTimeoutCheckHeartbeat;
 	private final int unlockTimeout;
 	private final int unlockTimeoutCheckHeartbeat;
+	private final ExpiryMode expiryMode;
+	private final int incrementalSliceSize;
+	private final int incrementalTimeBudget;
 	private final DatabaseOption databaseOption;
+	private final int databaseFlushInterval;
+	private final int databaseLockStripes;
+	private final boolean databaseLogSync;
+	private final String mysqlHost;
+	private final int mysqlPort;
+	private final String mysqlDatabase;
+	private final String mysqlUsername;
+	private final String mysqlPassword;
+	private final int mysqlPoolSize;
+	private final int mysqlIndexReload;
+	private final int subnetFailures;
+	private final int subnetWindow;
 	private final boolean chat;
 	private final boolean restrictMovement;
 	private boolean loading;
@@ -31,8 +63,19 @@ public class ConfigManager {
 	public ConfigManager(
 		final boolean bungeecord,
 		final int costFactor,
+		final int costFactorTarget,
+		final boolean costFactorAuto,
 		final int commandCooldown,
+		final int commandBurst,
+		final int commandAddressCooldown,
+		final int commandAddressBurst,
 		final int commandAttempts,
+		final int hashingThreads,
+		final int hashingQueueSize,
+		final String hashingAlgorithm,
+		final int argon2Memory,
+		final int argon2Iterations,
+		final int argon2Lanes,
 		final String passwordDefault,
 		final int passwordMinLength,
 		final boolean passwordBothCases,
@@ -40,28 +83,50 @@ public class ConfigManager {
 		final boolean passwordSpecialChars,
 		final String passwordSpecialCharset,
 		final String codeIssuer,
+		final int codeWindow,
+		final int codePendingLimit,
+		final int codePendingTimeout,
+		final int codePoolSize,
+		final boolean codeQrMap,
 		final boolean deauthAddressChanges,
 		final int deauthTimeout,
 		final boolean deauthTimeoutOnline,
 		final int deauthTimeoutCheckHeartbeat,
 		final int unlockTimeout,
 		final int unlockTimeoutCheckHeartbeat,
+		final String expiry,
+		final int incrementalSliceSize,
+		final int incrementalTimeBudget,
 		final String database,
+		final int databaseFlushInterval,
+		final int databaseLockStripes,
+		final boolean databaseLogSync,
+		final String mysqlHost,
+		final int mysqlPort,
+		final String mysqlDatabase,
+		final String mysqlUsername,
+		final String mysqlPassword,
+		final int mysqlPoolSize,
+		final int mysqlIndexReload,
+		final int subnetFailures,
+		final int subnetWindow,
 		final boolean chat,
 		final boolean restrictMovement
 	) {
 		this.loading = true;
 		this.bungeecord = bungeecord;
 		AuthUtil.console(this.bungeecord ? "BungeeCord mode is enabled" : "BungeeCord mode is disabled");
+		int cost;
 		if(costFactor < 12) {
-			this.costFactor = 12;
+			cost = 12;
 			AuthUtil.consoleWarning("Bcrypt cost factor set to " + costFactor + " is too low, reverting to minimum...");
 		} else if(costFactor > 30) {
-			this.costFactor = 30;
+			cost = 30;
 			AuthUtil.consoleWarning("Bycrypt cost factor set to " + costFactor + " is too high, reverting to maximum...");
 		} else {
-			this.costFactor = costFactor;
+			cost = costFactor;
 		}
+		this.costFactor = cost;
 		AuthUtil.console("Bcrypt cost factor set to " + this.costFactor);
 		if(commandCooldown <= 0) {
 			this.commandCooldown = 20;
@@ -70,6 +135,30 @@ public class ConfigManager {
 			this.commandCooldown = commandCooldown;
 		}
 		AuthUtil.console("Command cooldown time set to " + this.commandCooldown + " seconds");
+		if(commandBurst <= 0) {
+			this.commandBurst = 1;
+			AuthUtil.consoleWarning("Command burst set to " + commandBurst + " is not safe, reverting to default...");
+		} else {
+			this.commandBurst = commandBurst;
+		}
+		AuthUtil.console("Command burst set to " + this.commandBurst);
+		if(commandAddressCooldown < 0) {
+			this.commandAddressCooldown = 0;
+			AuthUtil.consoleWarning("Command address cooldown time set to " + commandAddressCooldown + " seconds is not safe, reverting to default...");
+		} else {
+			this.commandAddressCooldown = commandAddressCooldown;
+		}
+		AuthUtil.console(this.commandAddressCooldown == 0 ? "Command address cooldown is disabled" : "Command address cooldown time set to " + this.commandAddressCooldown + " seconds");
+		if(commandAddressBurst <= 0) {
+			this.commandAddressBurst = 5;
+			AuthUtil.consoleWarning("Command address burst set to " + commandAddressBurst + " is not safe, reverting to default...");
+		} else {
+			this.commandAddressBurst = commandAddressBurst;
+		}
+		AuthUtil.console("Command address burst set to " + this.commandAddressBurst);
+		if(this.bungeecord && this.commandAddressCooldown > 0) {
+			AuthUtil.consoleWarning("Command address cooldown is enabled with BungeeCord, make sure IP forwarding is on or every player will share the proxy's address");
+		}
 		if(commandAttempts < 0) {
 			this.commandAttempts = 10;
 			AuthUtil.consoleWarning("Maximum authentication attempts set to " + commandAttempts + " is not safe, reverting to default...");
@@ -77,6 +166,52 @@ public class ConfigManager {
 			this.commandAttempts = commandAttempts;
 		}
 		AuthUtil.console(this.commandAttempts != 0 ? "Maximum authentication attempts set to " + this.commandAttempts + " attempts" : "Maximum authentication attempts check disabled");
+		if(hashingThreads <= 0) {
+			this.hashingThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+			if(hashingThreads < 0) {
+				AuthUtil.consoleWarning("Hashing threads set to " + hashingThreads + " is not safe, reverting to default...");
+			}
+		} else {
+			this.hashingThreads = hashingThreads;
+		}
+		AuthUtil.console("Hashing threads set to " + this.hashingThreads);
+		if(hashingQueueSize <= 0) {
+			this.hashingQueueSize = 100;
+			AuthUtil.consoleWarning("Hashing queue size set to " + hashingQueueSize + " is not safe, reverting to default...");
+		} else {
+			this.hashingQueueSize = hashingQueueSize;
+		}
+		AuthUtil.console("Hashing queue size set to " + this.hashingQueueSize);
+		HashAlgorithm hashAlgorithm;
+		try {
+			hashAlgorithm = HashAlgorithm.valueOf(hashingAlgorithm.toUpperCase());
+		} catch(final IllegalArgumentException | NullPointerException e) {
+			hashAlgorithm = HashAlgorithm.ARGON2ID;
+			AuthUtil.consoleWarning("Hashing algorithm set to " + hashingAlgorithm + " is not safe, reverting...");
+		}
+		this.hashAlgorithm = hashAlgorithm;
+		AuthUtil.console("Hashing algorithm set to " + this.hashAlgorithm.toString());
+		if(argon2Lanes < 1 || argon2Lanes > 64) {
+			this.argon2Lanes = 4;
+			AuthUtil.consoleWarning("Argon2 lanes set to " + argon2Lanes + " is not safe, reverting to default...");
+		} else {
+			this.argon2Lanes = argon2Lanes;
+		}
+		if(argon2Memory < 8192) {
+			this.argon2Memory = 19456;
+			AuthUtil.consoleWarning("Argon2 memory set to " + argon2Memory + " KiB is too low, reverting to default...");
+		} else {
+			this.argon2Memory = argon2Memory;
+		}
+		if(argon2Iterations < 1) {
+			this.argon2Iterations = 2;
+			AuthUtil.consoleWarning("Argon2 iterations set to " + argon2Iterations + " is not safe, reverting to default...");
+		} else {
+			this.argon2Iterations = argon2Iterations;
+		}
+		if(this.hashAlgorithm == HashAlgorithm.ARGON2ID) {
+			AuthUtil.console("Argon2 set to " + this.argon2Memory + " KiB, " + this.argon2Iterations + " iterations and " + this.argon2Lanes + " lanes");
+		}
 		if(passwordMinLength <= 0) {
 			this.passwordMinLength = 8;
 			AuthUtil.consoleWarning("Minimum password length set to " + passwordMinLength + " is not safe, reverting to default...");
@@ -97,6 +232,36 @@ public class ConfigManager {
 		AuthUtil.console("Special charset set to " + this.passwordSpecialCharset);
 		this.codeIssuer = (codeIssuer == null || codeIssuer.isEmpty()) ? "DuoAuth" : codeIssuer;
 		AuthUtil.console("Code issuer set to " + this.codeIssuer);
+		if(codeWindow < 0 || codeWindow > 10) {
+			this.codeWindow = 1;
+			AuthUtil.consoleWarning("Code window set to " + codeWindow + " is not safe, reverting to default...");
+		} else {
+			this.codeWindow = codeWindow;
+		}
+		AuthUtil.console("Code window set to " + this.codeWindow + " steps");
+		if(codePendingLimit <= 0) {
+			this.codePendingLimit = 1000;
+			AuthUtil.consoleWarning("Code pending limit set to " + codePendingLimit + " is not safe, reverting to default...");
+		} else {
+			this.codePendingLimit = codePendingLimit;
+		}
+		AuthUtil.console("Code pending limit set to " + this.codePendingLimit + " secrets");
+		if(codePendingTimeout <= 0) {
+			this.codePendingTimeout = 10;
+			AuthUtil.consoleWarning("Code pending timeout set to " + codePendingTimeout + " is not safe, reverting to default...");
+		} else {
+			this.codePendingTimeout = codePendingTimeout;
+		}
+		AuthUtil.console("Code pending timeout set to " + this.codePendingTimeout + " minutes");
+		if(codePoolSize <= 0) {
+			this.codePoolSize = 32;
+			AuthUtil.consoleWarning("Code pool size set to " + codePoolSize + " is not safe, reverting to default...");
+		} else {
+			this.codePoolSize = codePoolSize;
+		}
+		AuthUtil.console("Code pool size set to " + this.codePoolSize + " secrets");
+		this.codeQrMap = codeQrMap;
+		AuthUtil.console(this.codeQrMap ? "QR maps enabled" : "QR maps disabled");
 		this.deauthAddressChanges = deauthAddressChanges;
 		AuthUtil.console(this.deauthAddressChanges ? "IP address check enabled" : "IP address check disabled");
 		if(deauthTimeout <= 0) {
@@ -129,6 +294,30 @@ public class ConfigManager {
 			this.unlockTimeoutCheckHeartbeat = unlockTimeoutCheckHeartbeat;
 		}
 		AuthUtil.console("Unlock timeout check heartbeat set to " + this.unlockTimeoutCheckHeartbeat + " minutes");
+		ExpiryMode expiryMode;
+		try {
+			expiryMode = ExpiryMode.valueOf(expiry.toUpperCase());
+		} catch(final IllegalArgumentException | NullPointerException e) {
+			expiryMode = ExpiryMode.SCHEDULER;
+			AuthUtil.consoleWarning("Expiry mode set to " + expiry + " is not safe, reverting...");
+		}
+		this.expiryMode = expiryMode;
+		AuthUtil.console("Expiry mode set to " + this.expiryMode.toString());
+		if(incrementalSliceSize <= 0) {
+			this.incrementalSliceSize = 200;
+			AuthUtil.consoleWarning("Incremental sweep slice size set to " + incrementalSliceSize + " is not safe, reverting to default...");
+		} else {
+			this.incrementalSliceSize = incrementalSliceSize;
+		}
+		if(incrementalTimeBudget <= 0) {
+			this.incrementalTimeBudget = 5;
+			AuthUtil.consoleWarning("Incremental sweep time budget set to " + incrementalTimeBudget + " milliseconds is not safe, reverting to default...");
+		} else {
+			this.incrementalTimeBudget = incrementalTimeBudget;
+		}
+		if(this.expiryMode == ExpiryMode.INCREMENTAL) {
+			AuthUtil.console("Incremental sweep set to " + this.incrementalSliceSize + " users or " + this.incrementalTimeBudget + " milliseconds per tick");
+		}
 		DatabaseOption databaseOption;
 		try {
 			databaseOption = DatabaseOption.valueOf(database.toUpperCase());
@@ -138,13 +327,83 @@ public class ConfigManager {
 		}
 		this.databaseOption = databaseOption;
 		AuthUtil.console("Database option set to " + this.databaseOption.toString());
+		if(databaseFlushInterval < 0) {
+			this.databaseFlushInterval = 1000;
+			AuthUtil.consoleWarning("Database flush interval set to " + databaseFlushInterval + " milliseconds is not safe, reverting to default...");
+		} else {
+			this.databaseFlushInterval = databaseFlushInterval;
+		}
+		AuthUtil.console(this.databaseFlushInterval != 0 ? "Database flush interval set to " + this.databaseFlushInterval + " milliseconds" : "Database write-behind disabled");
+		if(databaseLockStripes <= 0) {
+			this.databaseLockStripes = 64;
+			AuthUtil.consoleWarning("Database lock stripes set to " + databaseLockStripes + " is not safe, reverting to default...");
+		} else {
+			this.databaseLockStripes = databaseLockStripes;
+		}
+		AuthUtil.console("Database lock stripes set to " + this.databaseLockStripes);
+		this.databaseLogSync = databaseLogSync;
+		AuthUtil.console(this.databaseLogSync ? "Log database writes are synced to disk" : "Log database writes are not synced to disk");
+		this.mysqlHost = (mysqlHost == null || mysqlHost.isEmpty()) ? "localhost" : mysqlHost;
+		if(mysqlPort <= 0 || mysqlPort > 65535) {
+			this.mysqlPort = 3306;
+			AuthUtil.consoleWarning("MySQL port set to " + mysqlPort + " is not safe, reverting to default...");
+		} else {
+			this.mysqlPort = mysqlPort;
+		}
+		this.mysqlDatabase = (mysqlDatabase == null || mysqlDatabase.isEmpty()) ? "duoauth" : mysqlDatabase;
+		this.mysqlUsername = (mysqlUsername == null) ? "root" : mysqlUsername;
+		this.mysqlPassword = (mysqlPassword == null) ? "" : mysqlPassword;
+		if(this.databaseOption == DatabaseOption.MYSQL) {
+			AuthUtil.console("MySQL server set to " + this.mysqlHost + ":" + this.mysqlPort + "/" + this.mysqlDatabase + " as user " + this.mysqlUsername);
+		}
+		if(mysqlPoolSize <= 0) {
+			this.mysqlPoolSize = 8;
+			AuthUtil.consoleWarning("MySQL pool size set to " + mysqlPoolSize + " is not safe, reverting to default...");
+		} else {
+			this.mysqlPoolSize = mysqlPoolSize;
+		}
+		if(this.databaseOption == DatabaseOption.MYSQL) {
+			AuthUtil.console("MySQL pool size set to " + this.mysqlPoolSize + " connections");
+		}
+		if(mysqlIndexReload < 0) {
+			this.mysqlIndexReload = 5;
+			AuthUtil.consoleWarning("MySQL index reload set to " + mysqlIndexReload + " minutes is not safe, reverting to default...");
+		} else {
+			this.mysqlIndexReload = mysqlIndexReload;
+		}
+		if(this.databaseOption == DatabaseOption.MYSQL) {
+			AuthUtil.console(this.mysqlIndexReload == 0 ? "MySQL index reload is disabled" : "MySQL index reload set to " + this.mysqlIndexReload + " minutes");
+		}
+		if(subnetFailures < 0) {
+			this.subnetFailures = 0;
+			AuthUtil.consoleWarning("Subnet failure threshold set to " + subnetFailures + " is not safe, reverting to default...");
+		} else {
+			this.subnetFailures = subnetFailures;
+		}
+		if(subnetWindow <= 0) {
+			this.subnetWindow = 10;
+			AuthUtil.consoleWarning("Subnet failure window set to " + subnetWindow + " minutes is not safe, reverting to default...");
+		} else {
+			this.subnetWindow = subnetWindow;
+		}
+		AuthUtil.console(this.subnetFailures == 0 ? "Subnet failure threshold is disabled" : "Subnet failure threshold set to " + this.subnetFailures + " failures per " + this.subnetWindow + " minutes");
+		if(this.bungeecord && this.subnetFailures > 0) {
+			AuthUtil.consoleWarning("Subnet failure threshold is enabled with BungeeCord, make sure IP forwarding is on or every player will share the proxy's address");
+		}
 		this.chat = chat;
 		AuthUtil.console(this.chat ? "Chat is enabled" : "Chat is disabled");
 		this.restrictMovement = restrictMovement;
 		AuthUtil.console(this.restrictMovement ? "Movement is restricted" : "Movement is not restricted");
-		AuthUtil.console("Calculating default password digest at cost factor " + this.costFactor + " (this may take a moment)...");
+		// Calibration runs bcrypt several times, so it stays off the server thread along with the default digest
 		TaskChainManager.newChain()
-				.asyncFirst(() -> AuthUtil.getSecureBCryptHash(AuthUtil.getSecureSHA512Hash(passwordDefault), this.costFactor))
+				.asyncFirst(() -> {
+					if(costFactorTarget > 0) {
+						this.calibrate(costFactorTarget, costFactorAuto);
+					}
+					final int costFactorActive = this.getCostFactor();
+					AuthUtil.console("Calculating default password digest at cost factor " + costFactorActive + " (this may take a moment)...");
+					return AuthUtil.getSecureBCryptHash(passwordDefault, costFactorActive);
+				})
 				.syncLast(passwordDigest -> {
 					this.passwordDefault = passwordDigest;
 					AuthUtil.console("Default password digest for 'duoauth.enforced' is " + this.passwordDefault);
@@ -153,6 +412,28 @@ public class ConfigManager {
 				.execute();
 	}
 
+	private void calibrate(final int target, final boolean auto) {
+		final int cost = this.getCostFactor();
+		final long sample = CostCalibrator.measure();
+		// Calibration covers the whole valid range, so a cost factor too slow for this host can be lowered as well as raised
+		final int calibrated = CostCalibrator.calibrate(sample, target, 12, 30);
+		AuthUtil.console("Bcrypt cost factor calibrated to " + calibrated + " for a target of " + target + " milliseconds on this host (about " + CostCalibrator.predict(sample, calibrated) / 1000000 + " milliseconds)");
+		if(auto) {
+			synchronized(this) {
+				this.costFactor = calibrated;
+			}
+			AuthUtil.console("Bcrypt cost factor set to " + calibrated + (calibrated < cost ? ", lowered from " + cost + " to meet the target" : ""));
+		} else if(calibrated != cost) {
+			final String message = "Bcrypt cost factor " + cost + " takes about " + CostCalibrator.predict(sample, cost) / 1000000 + " milliseconds on this host, consider setting it to " + calibrated;
+			// Each step doubles the work, so two steps over means every login waits at least four times the target
+			if(cost - calibrated >= 2) {
+				AuthUtil.consoleSevere(message);
+			} else {
+				AuthUtil.consoleWarning(message);
+			}
+		}
+	}
+
 	public synchronized boolean isBungee() {
 		return this.bungeecord;
 	}
@@ -165,10 +446,46 @@ public class ConfigManager {
 		return this.commandCooldown;
 	}
 
+	public synchronized int getCommandBurst() {
+		return this.commandBurst;
+	}
+
+	public synchronized int getCommandAddressCooldown() {
+		return this.commandAddressCooldown;
+	}
+
+	public synchronized int getCommandAddressBurst() {
+		return this.commandAddressBurst;
+	}
+
 	public synchronized int getCommandAttempts() {
 		return this.commandAttempts;
 	}
 
+	public synchronized int getHashingThreads() {
+		return this.hashingThreads;
+	}
+
+	public synchronized int getHashingQueueSize() {
+		return this.hashingQueueSize;
+	}
+
+	public synchronized HashAlgorithm getHashAlgorithm() {
+		return this.hashAlgorithm;
+	}
+
+	public synchronized int getArgon2Memory() {
+		return this.argon2Memory;
+	}
+
+	public synchronized int getArgon2Iterations() {
+		return this.argon2Iterations;
+	}
+
+	public synchronized int getArgon2Lanes() {
+		return this.argon2Lanes;
+	}
+
 	public synchronized String getPasswordDefault() {
 		return this.passwordDefault;
 	}
@@ -197,6 +514,26 @@ public class ConfigManager {
 		return this.codeIssuer;
 	}
 
+	public synchronized int getCodeWindow() {
+		return this.codeWindow;
+	}
+
+	public synchronized int getCodePendingLimit() {
+		return this.codePendingLimit;
+	}
+
+	public synchronized int getCodePendingTimeout() {
+		return this.codePendingTimeout;
+	}
+
+	public synchronized int getCodePoolSize() {
+		return this.codePoolSize;
+	}
+
+	public synchronized boolean isCodeQrMap() {
+		return this.codeQrMap;
+	}
+
 	public synchronized boolean isDeauthAddressChanges() {
 		return this.deauthAddressChanges;
 	}
@@ -221,10 +558,70 @@ public class ConfigManager {
 		return this.unlockTimeoutCheckHeartbeat;
 	}
 
+	public synchronized ExpiryMode getExpiryMode() {
+		return this.expiryMode;
+	}
+
+	public synchronized int getIncrementalSliceSize() {
+		return this.incrementalSliceSize;
+	}
+
+	public synchronized int getIncrementalTimeBudget() {
+		return this.incrementalTimeBudget;
+	}
+
 	public synchronized DatabaseOption getDatabaseOption() {
 		return this.databaseOption;
 	}
 
+	public synchronized int getDatabaseFlushInterval() {
+		return this.databaseFlushInterval;
+	}
+
+	public synchronized int getDatabaseLockStripes() {
+		return this.databaseLockStripes;
+	}
+
+	public synchronized boolean isDatabaseLogSync() {
+		return this.databaseLogSync;
+	}
+
+	public synchronized String getMysqlHost() {
+		return this.mysqlHost;
+	}
+
+	public synchronized int getMysqlPort() {
+		return this.mysqlPort;
+	}
+
+	public synchronized String getMysqlDatabase() {
+		return this.mysqlDatabase;
+	}
+
+	public synchronized String getMysqlUsername() {
+		return this.mysqlUsername;
+	}
+
+	public synchronized String getMysqlPassword() {
+		return this.mysqlPassword;
+	}
+
+	public synchronized int getMysqlPoolSize() {
+		return this.mysqlPoolSize;
+	}
+
+	public synchronized int getMysqlIndexReload() {
+		return this.mysqlIndexReload;
+	}
+
+	public synchronized int getSubnetFailures() {
+		return this.subnetFailures;
+	}
+
+	public synchronized int getSubnetWindow() {
+		return this.subnetWindow;
+	}
+
 	public synchronized boolean isChat() {
 		return this.chat;
 	}
@@ -28,6 +28,7 @@ public class LangManager {
 	private final String pleaseSaveQr;
 	private final String prefixAlert;
 	private final String prefixNotify;
+	private final String queued;
 	private final String resetAdminSuccess;
 	private final String resetFailed;
 	private final String resetSuccess;
@@ -35,6 +36,7 @@ public class LangManager {
 	private final String settingUp;
 	private final String settingUpFailed;
 	private final String settingUpSuccess;
+	private final String subnetBlocked;
 
 	public LangManager(
 		final String allowAdminSuccess,
@@ -63,13 +65,15 @@ public class LangManager {
 		final String pleaseSaveQr,
 		final String prefixAlert,
 		final String prefixNotify,
+		final String queued,
 		final String resetAdminSuccess,
 		final String resetFailed,
 		final String resetSuccess,
 		final String sessionExpired,
 		final String settingUp,
 		final String settingUpFailed,
-		final String settingUpSuccess
+		final String settingUpSuccess,
+		final String subnetBlocked
 	) {
 		this.allowAdminSuccess = allowAdminSuccess;
 		this.authenticating = authenticating;
@@ -97,6 +101,7 @@ public class LangManager {
 		this.pleaseSaveQr = pleaseSaveQr;
 		this.prefixAlert = prefixAlert;
 		this.prefixNotify = prefixNotify;
+		this.queued = queued;
 		this.resetAdminSuccess = resetAdminSuccess;
 		this.resetFailed = resetFailed;
 		this.resetSuccess = resetSuccess;
@@ -104,6 +109,7 @@ public class LangManager {
 		this.settingUp = settingUp;
 		this.settingUpFailed = settingUpFailed;
 		this.settingUpSuccess = settingUpSuccess;
+		this.subnetBlocked = subnetBlocked;
 	}
 
 	public synchronized String getAllowAdminSuccess() {
@@ -210,6 +216,10 @@ public class LangManager {
 		return this.prefixNotify;
 	}
 
+	public synchronized String getQueued() {
+		return this.queued;
+	}
+
 	public synchronized String getResetAdminSuccess() {
 		return this.resetAdminSuccess;
 	}
@@ -238,4 +248,8 @@ public class LangManager {
 		return this.settingUpSuccess;
 	}
 
+	public synchronized String getSubnetBlocked() {
+		return this.subnetBlocked;
+	}
+
 }
@@ -0,0 +1,73 @@
+package me.foncused.duoauth.spigot.database;
+
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+
+public class AuthRecord {
+
+	private final String password;
+	private final String secret;
+	private final boolean authed;
+	private final int attempts;
+	private final InetAddress ip;
+	private final long timestamp;
+
+	public AuthRecord(
+		final String password,
+		final String secret,
+		final boolean authed,
+		final int attempts,
+		final InetAddress ip,
+		final long timestamp
+	) {
+		this.password = password;
+		this.secret = secret;
+		this.authed = authed;
+		this.attempts = attempts;
+		this.ip = ip;
+		this.timestamp = timestamp;
+	}
+
+	public String getPassword() {
+		return this.password;
+	}
+
+	public String getSecret() {
+		return this.secret;
+	}
+
+	public boolean isAuthed() {
+		return this.authed;
+	}
+
+	public int getAttempts() {
+		return this.attempts;
+	}
+
+	public InetAddress getIp() {
+		return this.ip;
+	}
+
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public AuthRecord apply(final Map<DatabaseProperty, ?> properties) throws UnknownHostException {
+		return new AuthRecord(
+				properties.containsKey(DatabaseProperty.PASSWORD) ? String.valueOf(properties.get(DatabaseProperty.PASSWORD)) : this.password,
+				properties.containsKey(DatabaseProperty.SECRET) ? String.valueOf(properties.get(DatabaseProperty.SECRET)) : this.secret,
+				properties.containsKey(DatabaseProperty.AUTHED) ? (boolean) properties.get(DatabaseProperty.AUTHED) : this.authed,
+				properties.containsKey(DatabaseProperty.ATTEMPTS) ? (int) properties.get(DatabaseProperty.ATTEMPTS) : this.attempts,
+				properties.containsKey(DatabaseProperty.IP) ? this.toAddress(properties.get(DatabaseProperty.IP)) : this.ip,
+				properties.containsKey(DatabaseProperty.TIMESTAMP) ? ((Number) properties.get(DatabaseProperty.TIMESTAMP)).longValue() : this.timestamp
+		);
+	}
+
+	private InetAddress toAddress(final Object data) throws UnknownHostException {
+		return (data instanceof InetAddress) ? (InetAddress) data : InetAddress.getByName(String.valueOf(data));
+	}
+
+}
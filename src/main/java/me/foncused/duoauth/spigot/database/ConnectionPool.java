@@ -0,0 +1,106 @@
+package me.foncused.duoauth.spigot.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionPool {
+
+	private static final long BORROW_TIMEOUT = 10000;
+	private static final long VALIDATE_AFTER = 30000;
+	private static final int VALIDATE_TIMEOUT = 2;
+	private final String url;
+	private final Properties properties;
+	private final Semaphore permits;
+	private final Deque<Idle> idle;
+	private volatile boolean closed;
+
+	public ConnectionPool(final String url, final Properties properties, final int size) {
+		this.url = url;
+		this.properties = properties;
+		this.permits = new Semaphore(size, true);
+		this.idle = new ArrayDeque<>();
+	}
+
+	public Connection borrow() throws SQLException {
+		if(this.closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+		try {
+			if(!(this.permits.tryAcquire(BORROW_TIMEOUT, TimeUnit.MILLISECONDS))) {
+				throw new SQLException("Timed out waiting for a database connection");
+			}
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", e);
+		}
+		try {
+			while(true) {
+				final Idle next;
+				synchronized(this.idle) {
+					next = this.idle.pollFirst();
+				}
+				if(next == null) {
+					return DriverManager.getConnection(this.url, this.properties);
+				}
+				if(System.currentTimeMillis() - next.since < VALIDATE_AFTER || next.connection.isValid(VALIDATE_TIMEOUT)) {
+					return next.connection;
+				}
+				this.discard(next.connection);
+			}
+		} catch(final SQLException | RuntimeException e) {
+			this.permits.release();
+			throw e;
+		}
+	}
+
+	public void release(final Connection connection) {
+		try {
+			if(this.closed || connection.isClosed() || (!(connection.getAutoCommit()))) {
+				this.discard(connection);
+			} else {
+				synchronized(this.idle) {
+					this.idle.offerFirst(new Idle(connection));
+				}
+			}
+		} catch(final SQLException e) {
+			this.discard(connection);
+		} finally {
+			this.permits.release();
+		}
+	}
+
+	public void close() {
+		this.closed = true;
+		synchronized(this.idle) {
+			this.idle.forEach(next -> this.discard(next.connection));
+			this.idle.clear();
+		}
+	}
+
+	private void discard(final Connection connection) {
+		try {
+			connection.close();
+		} catch(final SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static class Idle {
+
+		private final Connection connection;
+		private final long since;
+
+		private Idle(final Connection connection) {
+			this.connection = connection;
+			this.since = System.currentTimeMillis();
+		}
+
+	}
+
+}
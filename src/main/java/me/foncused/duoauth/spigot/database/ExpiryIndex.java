@@ -0,0 +1,151 @@
+package me.foncused.duoauth.spigot.database;
+
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ExpiryIndex {
+
+	private final Map<UUID, Entry> entries;
+	private volatile ExpiryListener listener;
+
+	public ExpiryIndex() {
+		this.entries = new ConcurrentHashMap<>();
+	}
+
+	public int build(final AuthDatabase db) {
+		this.entries.clear();
+		return this.reload(db);
+	}
+
+	// Keeps existing entries, users deleted by another server are dropped when they next come due and fail to refresh
+	public int reload(final AuthDatabase db) {
+		db.forEachRecord(this::put);
+		return this.entries.size();
+	}
+
+	public void put(final UUID uuid, final AuthRecord record) {
+		final Entry entry = new Entry(record.getTimestamp(), record.isAuthed(), record.getAttempts());
+		this.entries.put(uuid, entry);
+		this.arm(uuid, entry);
+	}
+
+	public void update(final UUID uuid, final Map<DatabaseProperty, ?> properties) {
+		if(!(properties.containsKey(DatabaseProperty.TIMESTAMP)
+				|| properties.containsKey(DatabaseProperty.AUTHED)
+				|| properties.containsKey(DatabaseProperty.ATTEMPTS))) {
+			return;
+		}
+		final Entry updated = this.entries.computeIfPresent(uuid, (k, entry) -> new Entry(
+				properties.containsKey(DatabaseProperty.TIMESTAMP) ? ((Number) properties.get(DatabaseProperty.TIMESTAMP)).longValue() : entry.time,
+				properties.containsKey(DatabaseProperty.AUTHED) ? (boolean) properties.get(DatabaseProperty.AUTHED) : entry.authed,
+				properties.containsKey(DatabaseProperty.ATTEMPTS) ? (int) properties.get(DatabaseProperty.ATTEMPTS) : entry.attempts
+		));
+		if(updated != null) {
+			this.arm(uuid, updated);
+		}
+	}
+
+	public void remove(final UUID uuid) {
+		this.entries.remove(uuid);
+		final ExpiryListener listener = this.listener;
+		if(listener != null) {
+			listener.disarm(uuid);
+		}
+	}
+
+	public void setListener(final ExpiryListener listener) {
+		this.listener = listener;
+		if(listener != null) {
+			this.entries.forEach(this::arm);
+		}
+	}
+
+	private void arm(final UUID uuid, final Entry entry) {
+		final ExpiryListener listener = this.listener;
+		if(listener != null) {
+			listener.arm(uuid, entry.time, entry.authed, entry.attempts);
+		}
+	}
+
+	public Set<UUID> getExpired(final long timeout) {
+		final long cutoff = System.currentTimeMillis() - timeout;
+		final Set<UUID> uuids = new HashSet<>();
+		this.entries.forEach((uuid, entry) -> {
+			if(entry.isExpired(cutoff)) {
+				uuids.add(uuid);
+			}
+		});
+		return uuids;
+	}
+
+	public Set<UUID> getUnlockable(final int attempts, final long timeout) {
+		final long cutoff = System.currentTimeMillis() - timeout;
+		final Set<UUID> uuids = new HashSet<>();
+		this.entries.forEach((uuid, entry) -> {
+			if(entry.isUnlockable(attempts, cutoff)) {
+				uuids.add(uuid);
+			}
+		});
+		return uuids;
+	}
+
+	public boolean isExpired(final UUID uuid, final long timeout) {
+		final Entry entry = this.entries.get(uuid);
+		return entry != null && entry.isExpired(System.currentTimeMillis() - timeout);
+	}
+
+	public boolean isUnlockable(final UUID uuid, final int attempts, final long timeout) {
+		final Entry entry = this.entries.get(uuid);
+		return entry != null && entry.isUnlockable(attempts, System.currentTimeMillis() - timeout);
+	}
+
+	public boolean refresh(final UUID uuid, final AuthDatabase db) {
+		final AuthRecord record = db.readRecord(uuid);
+		if(record != null) {
+			this.put(uuid, record);
+			return true;
+		}
+		if(!(db.contains(uuid))) {
+			this.remove(uuid);
+		}
+		return false;
+	}
+
+	public List<UUID> snapshot() {
+		return new ArrayList<>(this.entries.keySet());
+	}
+
+	public int size() {
+		return this.entries.size();
+	}
+
+	private static class Entry {
+
+		private final long time;
+		private final boolean authed;
+		private final int attempts;
+
+		private Entry(final long time, final boolean authed, final int attempts) {
+			this.time = time;
+			this.authed = authed;
+			this.attempts = attempts;
+		}
+
+		private boolean isExpired(final long cutoff) {
+			return this.authed && this.time <= cutoff;
+		}
+
+		private boolean isUnlockable(final int attempts, final long cutoff) {
+			return this.attempts >= attempts && this.time <= cutoff;
+		}
+
+	}
+
+}
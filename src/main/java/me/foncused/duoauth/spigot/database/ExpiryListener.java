@@ -0,0 +1,11 @@
+package me.foncused.duoauth.spigot.database;
+
+import java.util.UUID;
+
+public interface ExpiryListener {
+
+	void arm(final UUID uuid, final long time, final boolean authed, final int attempts);
+
+	void disarm(final UUID uuid);
+
+}
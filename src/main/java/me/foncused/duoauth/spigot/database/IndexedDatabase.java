@@ -0,0 +1,108 @@
+package me.foncused.duoauth.spigot.database;
+
+import com.google.gson.JsonElement;
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class IndexedDatabase extends AuthDatabase {
+
+	private final AuthDatabase delegate;
+	private final ExpiryIndex index;
+
+	public IndexedDatabase(final DuoAuth plugin, final AuthDatabase delegate, final ExpiryIndex index) {
+		super(plugin);
+		this.delegate = delegate;
+		this.index = index;
+	}
+
+	@Override
+	public JsonElement readProperty(final UUID uuid, final DatabaseProperty property) {
+		return this.delegate.readProperty(uuid, property);
+	}
+
+	@Override
+	public AuthRecord readRecord(final UUID uuid) {
+		return this.delegate.readRecord(uuid);
+	}
+
+	@Override
+	public Set<UUID> readAll() {
+		return this.delegate.readAll();
+	}
+
+	@Override
+	public boolean forEach(final Consumer<UUID> action) {
+		return this.delegate.forEach(action);
+	}
+
+	@Override
+	public boolean forEachRecord(final BiConsumer<UUID, AuthRecord> action) {
+		return this.delegate.forEachRecord(action);
+	}
+
+	@Override
+	public <O> boolean writeProperty(final UUID uuid, final DatabaseProperty property, final O data) {
+		if(this.delegate.writeProperty(uuid, property, data)) {
+			this.index.update(uuid, Collections.singletonMap(property, data));
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean writeProperties(final UUID uuid, final Map<DatabaseProperty, ?> properties) {
+		if(this.delegate.writeProperties(uuid, properties)) {
+			this.index.update(uuid, properties);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int writeBatch(final Map<UUID, Map<DatabaseProperty, Object>> batch) {
+		final int written = this.delegate.writeBatch(batch);
+		if(written == batch.size()) {
+			batch.forEach(this.index::update);
+		} else {
+			// The delegate does not say which users were written, so their entries are re-read from storage
+			batch.keySet().forEach(uuid -> this.index.refresh(uuid, this.delegate));
+		}
+		return written;
+	}
+
+	@Override
+	public boolean writeRecord(final UUID uuid, final AuthRecord record) {
+		if(this.delegate.writeRecord(uuid, record)) {
+			this.index.put(uuid, record);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(final UUID uuid) {
+		return this.delegate.contains(uuid);
+	}
+
+	@Override
+	public boolean delete(final UUID uuid) {
+		if(this.delegate.delete(uuid)) {
+			this.index.remove(uuid);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void close() {
+		this.delegate.close();
+	}
+
+}
@@ -0,0 +1,377 @@
+package me.foncused.duoauth.spigot.database;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+import me.foncused.duoauth.spigot.util.AuthUtil;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class JsonDatabase extends AuthDatabase {
+
+	private static final String SCHEMA_VERSION_KEY = "SchemaVersion";
+	private final ReadWriteLock[] locks;
+
+	public JsonDatabase(final DuoAuth plugin, final int stripes) {
+		super(plugin);
+		this.locks = new ReadWriteLock[stripes];
+		for(int i = 0; i < stripes; i++) {
+			this.locks[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	@Override
+	public JsonElement readProperty(final UUID uuid, final DatabaseProperty property) {
+		final JsonObject object = this.readLocked(uuid);
+		final String p = property.toString();
+		if(object != null && object.has(p)) {
+			return object.get(p);
+		}
+		this.readError(uuid, property);
+		return null;
+	}
+
+	@Override
+	public AuthRecord readRecord(final UUID uuid) {
+		final JsonObject object = this.readLocked(uuid);
+		if(object != null) {
+			try {
+				return new AuthRecord(
+						object.get(DatabaseProperty.PASSWORD.toString()).getAsString(),
+						object.get(DatabaseProperty.SECRET.toString()).getAsString(),
+						object.get(DatabaseProperty.AUTHED.toString()).getAsBoolean(),
+						object.get(DatabaseProperty.ATTEMPTS.toString()).getAsInt(),
+						InetAddress.getByName(object.get(DatabaseProperty.IP.toString()).getAsString()),
+						this.getTimestamp(uuid, object.get(DatabaseProperty.TIMESTAMP.toString()).getAsJsonPrimitive())
+				);
+			} catch(final NullPointerException | IllegalStateException | UnknownHostException e) {
+				e.printStackTrace();
+			}
+		}
+		AuthUtil.consoleSevere(this.getJsonFile(uuid) + ": Unable to read record from file");
+		return null;
+	}
+
+	private long getTimestamp(final UUID uuid, final JsonPrimitive timestamp) {
+		return timestamp.isNumber() ? timestamp.getAsLong() : this.toMillis(uuid, timestamp.getAsString());
+	}
+
+	private JsonObject readLocked(final UUID uuid) {
+		final Lock lock = this.getLock(uuid).readLock();
+		lock.lock();
+		try {
+			return this.read(uuid);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private JsonObject read(final UUID uuid) {
+		try {
+			final FileReader reader = new FileReader(new File(this.getJsonPath(uuid)));
+			final JsonObject object = new JsonParser().parse(reader).getAsJsonObject();
+			reader.close();
+			return object;
+		} catch(final IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public Set<UUID> readAll() {
+		final Set<UUID> uuids = new HashSet<>();
+		if(!(this.forEach(uuids::add))) {
+			return null;
+		}
+		return Collections.unmodifiableSet(uuids);
+	}
+
+	@Override
+	public boolean forEach(final Consumer<UUID> action) {
+		final Path data = Paths.get(this.getDataFolder());
+		if(!(Files.isDirectory(data))) {
+			return true;
+		}
+		try(final DirectoryStream<Path> shards = Files.newDirectoryStream(data)) {
+			for(final Path shard : shards) {
+				if(shard.getFileName().toString().length() != 2 || (!(Files.isDirectory(shard)))) {
+					continue;
+				}
+				try(final DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+					for(final Path file : files) {
+						final UUID uuid = this.parseJsonFile(file.getFileName().toString());
+						if(uuid != null) {
+							action.accept(uuid);
+						}
+					}
+				}
+			}
+			return true;
+		} catch(final IOException | DirectoryIteratorException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	public void migrate() {
+		this.migrateLayout();
+		this.migrateSchema();
+	}
+
+	private void migrateLayout() {
+		final Path data = Paths.get(this.getDataFolder());
+		if(!(Files.isDirectory(data))) {
+			return;
+		}
+		int migrated = 0;
+		try(final DirectoryStream<Path> files = Files.newDirectoryStream(data, "*.json")) {
+			for(final Path file : files) {
+				final UUID uuid = this.parseJsonFile(file.getFileName().toString());
+				if(uuid == null) {
+					continue;
+				}
+				final Path target = Paths.get(this.getJsonPath(uuid));
+				Files.createDirectories(target.getParent());
+				Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				migrated++;
+			}
+		} catch(final IOException | DirectoryIteratorException e) {
+			e.printStackTrace();
+			AuthUtil.consoleSevere("Unable to migrate all users to the sharded data layout, " + migrated + " users were moved");
+			return;
+		}
+		if(migrated > 0) {
+			AuthUtil.console("Migrated " + migrated + " users to the sharded data layout");
+		}
+	}
+
+	private void migrateSchema() {
+		final Path marker = Paths.get(this.getDataFolder(), ".schema");
+		try {
+			if(Files.exists(marker) && Integer.parseInt(new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).trim()) >= SCHEMA_VERSION) {
+				return;
+			}
+		} catch(final IOException | NumberFormatException e) {
+			e.printStackTrace();
+		}
+		final AtomicInteger migrated = new AtomicInteger();
+		if(!(this.forEach(uuid -> {
+			if(this.migrateSchema(uuid)) {
+				migrated.incrementAndGet();
+			}
+		}))) {
+			AuthUtil.consoleSevere("Unable to migrate all users to schema version " + SCHEMA_VERSION + ", " + migrated.get() + " users were migrated");
+			return;
+		}
+		try {
+			Files.createDirectories(marker.getParent());
+			Files.write(marker, String.valueOf(SCHEMA_VERSION).getBytes(StandardCharsets.UTF_8));
+		} catch(final IOException e) {
+			e.printStackTrace();
+		}
+		if(migrated.get() > 0) {
+			AuthUtil.console("Migrated " + migrated.get() + " users to schema version " + SCHEMA_VERSION);
+		}
+	}
+
+	private boolean migrateSchema(final UUID uuid) {
+		final Lock lock = this.getLock(uuid).writeLock();
+		lock.lock();
+		try {
+			final JsonObject object = this.read(uuid);
+			if(object == null) {
+				return false;
+			}
+			final JsonElement version = object.get(SCHEMA_VERSION_KEY);
+			if(version != null && version.getAsInt() >= SCHEMA_VERSION) {
+				return false;
+			}
+			final String key = DatabaseProperty.TIMESTAMP.toString();
+			final JsonElement timestamp = object.get(key);
+			if(timestamp != null && timestamp.isJsonPrimitive()) {
+				object.addProperty(key, this.getTimestamp(uuid, timestamp.getAsJsonPrimitive()));
+			}
+			object.addProperty(SCHEMA_VERSION_KEY, SCHEMA_VERSION);
+			return this.write(uuid, object);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private UUID parseJsonFile(final String name) {
+		if(name.length() != 41 || (!(name.endsWith(".json")))) {
+			return null;
+		}
+		long most = 0;
+		long least = 0;
+		int digits = 0;
+		for(int i = 0; i < 36; i++) {
+			final char c = name.charAt(i);
+			if(i == 8 || i == 13 || i == 18 || i == 23) {
+				if(c != '-') {
+					return null;
+				}
+				continue;
+			}
+			final int digit = Character.digit(c, 16);
+			if(digit < 0) {
+				return null;
+			}
+			if(digits++ < 16) {
+				most = (most << 4) | digit;
+			} else {
+				least = (least << 4) | digit;
+			}
+		}
+		return new UUID(most, least);
+	}
+
+	private void readError(final UUID uuid, final DatabaseProperty property) {
+		AuthUtil.consoleSevere(this.getJsonFile(uuid) + ": Unable to read property '" + property.toString() + "' from file");
+	}
+
+	@Override
+	public <O> boolean writeProperty(final UUID uuid, final DatabaseProperty property, final O data) {
+		return this.writeProperties(uuid, Collections.singletonMap(property, data));
+	}
+
+	@Override
+	public boolean writeProperties(final UUID uuid, final Map<DatabaseProperty, ?> properties) {
+		final Lock lock = this.getLock(uuid).writeLock();
+		lock.lock();
+		try {
+			final JsonObject object = this.read(uuid);
+			if(object != null) {
+				final Gson gson = new Gson();
+				properties.forEach((property, data) -> object.add(property.toString(), gson.toJsonTree(data)));
+				if(this.write(uuid, object)) {
+					properties.forEach((property, data) -> AuthUtil.console(this.getJsonFile(uuid) + ": " + property.toString() + " -> " + data));
+					return true;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		properties.keySet().forEach(property -> this.writeError(uuid, property));
+		return false;
+	}
+
+	@Override
+	public boolean writeRecord(final UUID uuid, final AuthRecord record) {
+		final JsonObject object = new JsonObject();
+		object.addProperty(DatabaseProperty.PASSWORD.toString(), record.getPassword());
+		object.addProperty(DatabaseProperty.SECRET.toString(), record.getSecret());
+		object.addProperty(DatabaseProperty.AUTHED.toString(), record.isAuthed());
+		object.addProperty(DatabaseProperty.ATTEMPTS.toString(), record.getAttempts());
+		object.addProperty(DatabaseProperty.IP.toString(), record.getIp().getHostAddress());
+		object.addProperty(DatabaseProperty.TIMESTAMP.toString(), record.getTimestamp());
+		object.addProperty(SCHEMA_VERSION_KEY, SCHEMA_VERSION);
+		final Lock lock = this.getLock(uuid).writeLock();
+		lock.lock();
+		try {
+			return this.write(uuid, object);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean write(final UUID uuid, final JsonObject object) {
+		final String shardPath = this.getShardFolder(uuid);
+		final File shard = new File(shardPath);
+		if(!(shard.exists()) && (!(shard.mkdirs())) && (!(shard.exists()))) {
+			AuthUtil.consoleSevere("Unable to create directory " + shardPath);
+			return false;
+		}
+		final String jsonPath = this.getJsonPath(uuid);
+		final File temp = new File(jsonPath + ".tmp");
+		try {
+			try(final FileWriter writer = new FileWriter(temp)) {
+				writer.write(object.toString());
+			}
+			Files.move(temp.toPath(), Paths.get(jsonPath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch(final IOException e) {
+			e.printStackTrace();
+		}
+		// A partly written temp file is never moved into place, so it is removed rather than left beside the record
+		if(temp.exists() && (!(temp.delete()))) {
+			AuthUtil.consoleWarning("Unable to delete " + temp.getPath());
+		}
+		return false;
+	}
+
+	private void writeError(final UUID uuid, final DatabaseProperty property) {
+		AuthUtil.consoleSevere(this.getJsonFile(uuid) + ": Unable to write property '" + property.toString() + "' to file");
+	}
+
+	@Override
+	public boolean contains(final UUID uuid) {
+		final Lock lock = this.getLock(uuid).readLock();
+		lock.lock();
+		try {
+			return new File(this.getJsonPath(uuid)).exists();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean delete(final UUID uuid) {
+		final Lock lock = this.getLock(uuid).writeLock();
+		lock.lock();
+		try {
+			return new File(this.getJsonPath(uuid)).delete();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private ReadWriteLock getLock(final UUID uuid) {
+		final int hash = uuid.hashCode();
+		return this.locks[((hash ^ (hash >>> 16)) & 0x7fffffff) % this.locks.length];
+	}
+
+	private String getJsonPath(final UUID uuid) {
+		return this.getShardFolder(uuid) + this.getJsonFile(uuid);
+	}
+
+	private String getShardFolder(final UUID uuid) {
+		return this.getDataFolder() + uuid.toString().substring(0, 2) + "/";
+	}
+
+	private String getJsonFile(final UUID uuid) {
+		return uuid.toString() + ".json";
+	}
+
+	private String getDataFolder() {
+		return this.plugin.getDataFolder().getPath() + "/data/";
+	}
+
+}
@@ -0,0 +1,501 @@
+package me.foncused.duoauth.spigot.database;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+import me.foncused.duoauth.spigot.util.AuthUtil;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+public class LogDatabase extends AuthDatabase {
+
+	private static final byte PUT_V1 = 1;
+	private static final byte DELETE = 2;
+	private static final byte PUT = 3;
+	private static final int HEADER = 8;
+	private static final int KEY = 17;
+	private static final int MAX_ENTRY = 65536;
+	private static final int COMPACT_THRESHOLD = 1024;
+	private static final long COMPACT_INTERVAL = 60;
+	private final boolean sync;
+	private final ReadWriteLock swapLock;
+	private final Object appendLock;
+	private final ScheduledExecutorService compactor;
+	private Map<UUID, Long> index;
+	private FileChannel channel;
+	private long position;
+	private long dead;
+
+	public LogDatabase(final DuoAuth plugin, final boolean sync) {
+		super(plugin);
+		this.sync = sync;
+		this.swapLock = new ReentrantReadWriteLock();
+		this.appendLock = new Object();
+		this.index = new ConcurrentHashMap<>();
+		this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "DuoAuth Compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public boolean open() {
+		final File folder = this.plugin.getDataFolder();
+		if(!(folder.exists()) && (!(folder.mkdirs()))) {
+			AuthUtil.consoleSevere("Unable to create directory " + folder.getPath());
+			return false;
+		}
+		try {
+			Files.deleteIfExists(this.getCompactPath());
+			this.channel = FileChannel.open(this.getLogPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			final int legacy = this.recover();
+			AuthUtil.console("Loaded " + this.index.size() + " users from log " + this.getLogPath());
+			if(legacy > 0) {
+				AuthUtil.console("Migrating " + legacy + " log entries to schema version " + SCHEMA_VERSION + "...");
+				this.compact();
+			}
+			this.compactor.scheduleWithFixedDelay(this::compactIfNeeded, COMPACT_INTERVAL, COMPACT_INTERVAL, TimeUnit.SECONDS);
+			return true;
+		} catch(final IOException e) {
+			e.printStackTrace();
+		}
+		this.close();
+		return false;
+	}
+
+	private int recover() throws IOException {
+		long offset = 0;
+		int legacy = 0;
+		try(final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.getLogPath())))) {
+			while(true) {
+				final int length;
+				try {
+					length = in.readInt();
+				} catch(final EOFException e) {
+					break;
+				}
+				if(length < KEY || length > MAX_ENTRY) {
+					break;
+				}
+				final int checksum;
+				final byte[] body = new byte[length];
+				try {
+					checksum = in.readInt();
+					in.readFully(body);
+				} catch(final EOFException e) {
+					break;
+				}
+				if(this.checksum(body) != checksum) {
+					break;
+				}
+				final UUID uuid = this.readKey(body);
+				final Long previous = (body[0] == DELETE) ? this.index.remove(uuid) : this.index.put(uuid, offset);
+				if(previous != null) {
+					this.dead++;
+				}
+				if(body[0] == DELETE) {
+					this.dead++;
+				} else if(body[0] == PUT_V1) {
+					legacy++;
+				}
+				offset += HEADER + length;
+			}
+		}
+		if(offset < this.channel.size()) {
+			AuthUtil.consoleWarning("Discarding " + (this.channel.size() - offset) + " bytes of incomplete or corrupt entries at the end of " + this.getLogPath());
+			this.channel.truncate(offset);
+		}
+		this.position = offset;
+		return legacy;
+	}
+
+	@Override
+	public JsonElement readProperty(final UUID uuid, final DatabaseProperty property) {
+		final AuthRecord record = this.read(uuid);
+		if(record != null) {
+			switch(property) {
+				case PASSWORD:
+					return new JsonPrimitive(record.getPassword());
+				case SECRET:
+					return new JsonPrimitive(record.getSecret());
+				case AUTHED:
+					return new JsonPrimitive(record.isAuthed());
+				case ATTEMPTS:
+					return new JsonPrimitive(record.getAttempts());
+				case IP:
+					return new JsonPrimitive(record.getIp().getHostAddress());
+				case TIMESTAMP:
+					return new JsonPrimitive(record.getTimestamp());
+			}
+		}
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to read property '" + property.toString() + "' from log");
+		return null;
+	}
+
+	@Override
+	public AuthRecord readRecord(final UUID uuid) {
+		final AuthRecord record = this.read(uuid);
+		if(record == null) {
+			AuthUtil.consoleSevere(uuid.toString() + ": Unable to read record from log");
+		}
+		return record;
+	}
+
+	private AuthRecord read(final UUID uuid) {
+		this.swapLock.readLock().lock();
+		try {
+			final Long offset = this.index.get(uuid);
+			if(offset != null) {
+				return this.decode(this.readEntry(this.channel, offset));
+			}
+		} catch(final IOException e) {
+			e.printStackTrace();
+		} finally {
+			this.swapLock.readLock().unlock();
+		}
+		return null;
+	}
+
+	@Override
+	public Set<UUID> readAll() {
+		return Collections.unmodifiableSet(new HashSet<>(this.index.keySet()));
+	}
+
+	@Override
+	public <O> boolean writeProperty(final UUID uuid, final DatabaseProperty property, final O data) {
+		return this.writeProperties(uuid, Collections.singletonMap(property, data));
+	}
+
+	@Override
+	public boolean writeProperties(final UUID uuid, final Map<DatabaseProperty, ?> properties) {
+		return this.writeBatch(Collections.<UUID, Map<DatabaseProperty, Object>>singletonMap(uuid, new HashMap<>(properties))) == 1;
+	}
+
+	@Override
+	public int writeBatch(final Map<UUID, Map<DatabaseProperty, Object>> batch) {
+		this.swapLock.readLock().lock();
+		try {
+			synchronized(this.appendLock) {
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				final Map<UUID, Long> offsets = new HashMap<>();
+				for(final Map.Entry<UUID, Map<DatabaseProperty, Object>> entry : batch.entrySet()) {
+					final UUID uuid = entry.getKey();
+					final Long offset = this.index.get(uuid);
+					if(offset == null) {
+						entry.getValue().keySet().forEach(property -> this.writeError(uuid, property));
+						continue;
+					}
+					final AuthRecord record = this.decode(this.readEntry(this.channel, offset)).apply(entry.getValue());
+					offsets.put(uuid, this.position + out.size());
+					out.write(this.encode(PUT, uuid, record));
+				}
+				if(offsets.isEmpty()) {
+					return 0;
+				}
+				this.append(out.toByteArray());
+				offsets.forEach((uuid, offset) -> {
+					this.index.put(uuid, offset);
+					this.dead++;
+					batch.get(uuid).forEach((property, data) -> AuthUtil.console(uuid.toString() + ": " + property.toString() + " -> " + data));
+				});
+				return offsets.size();
+			}
+		} catch(final IOException e) {
+			e.printStackTrace();
+		} finally {
+			this.swapLock.readLock().unlock();
+		}
+		batch.forEach((uuid, properties) -> properties.keySet().forEach(property -> this.writeError(uuid, property)));
+		return 0;
+	}
+
+	@Override
+	public boolean writeRecord(final UUID uuid, final AuthRecord record) {
+		this.swapLock.readLock().lock();
+		try {
+			synchronized(this.appendLock) {
+				final long offset = this.position;
+				this.append(this.encode(PUT, uuid, record));
+				if(this.index.put(uuid, offset) != null) {
+					this.dead++;
+				}
+				return true;
+			}
+		} catch(final IOException e) {
+			e.printStackTrace();
+		} finally {
+			this.swapLock.readLock().unlock();
+		}
+		return false;
+	}
+
+	private void writeError(final UUID uuid, final DatabaseProperty property) {
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to write property '" + property.toString() + "' to log");
+	}
+
+	@Override
+	public boolean contains(final UUID uuid) {
+		return this.index.containsKey(uuid);
+	}
+
+	@Override
+	public boolean delete(final UUID uuid) {
+		this.swapLock.readLock().lock();
+		try {
+			synchronized(this.appendLock) {
+				if(!(this.index.containsKey(uuid))) {
+					return false;
+				}
+				this.append(this.encode(DELETE, uuid, null));
+				this.index.remove(uuid);
+				this.dead += 2;
+				return true;
+			}
+		} catch(final IOException e) {
+			e.printStackTrace();
+		} finally {
+			this.swapLock.readLock().unlock();
+		}
+		return false;
+	}
+
+	@Override
+	public void close() {
+		this.compactor.shutdown();
+		try {
+			this.compactor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.swapLock.writeLock().lock();
+		try {
+			if(this.channel != null) {
+				this.channel.force(true);
+				this.channel.close();
+			}
+		} catch(final IOException e) {
+			e.printStackTrace();
+		} finally {
+			this.swapLock.writeLock().unlock();
+		}
+	}
+
+	private void compactIfNeeded() {
+		final long dead;
+		final int live;
+		synchronized(this.appendLock) {
+			dead = this.dead;
+			live = this.index.size();
+		}
+		if(dead >= COMPACT_THRESHOLD && dead > live) {
+			this.compact();
+		}
+	}
+
+	private void compact() {
+		final Path compactPath = this.getCompactPath();
+		try(final FileChannel compacted = FileChannel.open(compactPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			// Copy a snapshot of live entries while appends continue against the old log
+			final Map<UUID, Long> snapshot;
+			final long end;
+			this.swapLock.readLock().lock();
+			try {
+				synchronized(this.appendLock) {
+					snapshot = new HashMap<>(this.index);
+					end = this.position;
+				}
+			} finally {
+				this.swapLock.readLock().unlock();
+			}
+			final Map<UUID, Long> index = new ConcurrentHashMap<>();
+			long position = 0;
+			for(final Map.Entry<UUID, Long> entry : snapshot.entrySet()) {
+				final byte[] body = this.readEntry(this.channel, entry.getValue());
+				index.put(entry.getKey(), position);
+				position += this.write(compacted, position, this.upgrade(body));
+			}
+			// Replay whatever was appended since the snapshot, then swap logs
+			this.swapLock.writeLock().lock();
+			try {
+				long offset = end;
+				while(offset < this.position) {
+					final byte[] body = this.readEntry(this.channel, offset);
+					final UUID uuid = this.readKey(body);
+					if(body[0] == DELETE) {
+						if(index.remove(uuid) != null) {
+							position += this.write(compacted, position, this.frame(body));
+						}
+					} else {
+						index.put(uuid, position);
+						position += this.write(compacted, position, this.upgrade(body));
+					}
+					offset += HEADER + body.length;
+				}
+				compacted.force(true);
+				final long before = this.position;
+				this.channel.close();
+				Files.move(compactPath, this.getLogPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				this.channel = FileChannel.open(this.getLogPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+				this.index = index;
+				this.position = position;
+				this.dead = 0;
+				AuthUtil.console("Compacted log from " + before + " to " + position + " bytes");
+			} finally {
+				this.swapLock.writeLock().unlock();
+			}
+		} catch(final IOException e) {
+			e.printStackTrace();
+			this.reopen();
+		}
+	}
+
+	private void reopen() {
+		this.swapLock.writeLock().lock();
+		try {
+			if(!(this.channel.isOpen())) {
+				this.channel = FileChannel.open(this.getLogPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			}
+			Files.deleteIfExists(this.getCompactPath());
+		} catch(final IOException e) {
+			e.printStackTrace();
+		} finally {
+			this.swapLock.writeLock().unlock();
+		}
+	}
+
+	private void append(final byte[] bytes) throws IOException {
+		this.position += this.write(this.channel, this.position, bytes);
+		// A batch is appended as one write, so it costs a single sync however many players it holds
+		if(this.sync) {
+			this.channel.force(false);
+		}
+	}
+
+	private int write(final FileChannel channel, final long position, final byte[] bytes) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		long offset = position;
+		while(buffer.hasRemaining()) {
+			offset += channel.write(buffer, offset);
+		}
+		return bytes.length;
+	}
+
+	private byte[] readEntry(final FileChannel channel, final long offset) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(HEADER);
+		this.readFully(channel, header, offset);
+		header.flip();
+		final int length = header.getInt();
+		final int checksum = header.getInt();
+		if(length < KEY || length > MAX_ENTRY) {
+			throw new IOException("Invalid entry length " + length + " at offset " + offset);
+		}
+		final ByteBuffer body = ByteBuffer.allocate(length);
+		this.readFully(channel, body, offset + HEADER);
+		if(this.checksum(body.array()) != checksum) {
+			throw new IOException("Checksum mismatch at offset " + offset);
+		}
+		return body.array();
+	}
+
+	private void readFully(final FileChannel channel, final ByteBuffer buffer, final long offset) throws IOException {
+		long position = offset;
+		while(buffer.hasRemaining()) {
+			final int read = channel.read(buffer, position);
+			if(read < 0) {
+				throw new EOFException("Unexpected end of log at offset " + position);
+			}
+			position += read;
+		}
+	}
+
+	private byte[] encode(final byte type, final UUID uuid, final AuthRecord record) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(type);
+		out.writeLong(uuid.getMostSignificantBits());
+		out.writeLong(uuid.getLeastSignificantBits());
+		if(record != null) {
+			out.writeUTF(record.getPassword());
+			out.writeUTF(record.getSecret());
+			out.writeBoolean(record.isAuthed());
+			out.writeInt(record.getAttempts());
+			out.writeUTF(record.getIp().getHostAddress());
+			out.writeLong(record.getTimestamp());
+		}
+		out.flush();
+		return this.frame(bytes.toByteArray());
+	}
+
+	private AuthRecord decode(final byte[] body) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(body, KEY, body.length - KEY));
+		return new AuthRecord(
+				in.readUTF(),
+				in.readUTF(),
+				in.readBoolean(),
+				in.readInt(),
+				InetAddress.getByName(in.readUTF()),
+				(body[0] == PUT_V1) ? this.toMillis(this.readKey(body), in.readUTF()) : in.readLong()
+		);
+	}
+
+	private byte[] upgrade(final byte[] body) throws IOException {
+		return (body[0] == PUT_V1) ? this.encode(PUT, this.readKey(body), this.decode(body)) : this.frame(body);
+	}
+
+	private byte[] frame(final byte[] body) {
+		return ByteBuffer.allocate(HEADER + body.length)
+				.putInt(body.length)
+				.putInt(this.checksum(body))
+				.put(body)
+				.array();
+	}
+
+	private UUID readKey(final byte[] body) {
+		final ByteBuffer buffer = ByteBuffer.wrap(body, 1, 16);
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+
+	private int checksum(final byte[] body) {
+		final CRC32 crc = new CRC32();
+		crc.update(body, 0, body.length);
+		return (int) crc.getValue();
+	}
+
+	private Path getLogPath() {
+		return Paths.get(this.plugin.getDataFolder().getPath(), "data.log");
+	}
+
+	private Path getCompactPath() {
+		return Paths.get(this.plugin.getDataFolder().getPath(), "data.log.compact");
+	}
+
+}
@@ -0,0 +1,410 @@
+package me.foncused.duoauth.spigot.database;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+import me.foncused.duoauth.spigot.util.AuthUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class MappedDatabase extends AuthDatabase {
+
+	private static final int MAGIC = 0x44414d46;
+	private static final int VERSION = 2;
+	private static final int HEADER = 16;
+	private static final int SLOT = 256;
+	private static final int INITIAL_SLOTS = 1024;
+	private static final int STATUS = 0;
+	private static final int UUID_MOST = 1;
+	private static final int UUID_LEAST = 9;
+	private static final int PASSWORD = 17;
+	private static final int PASSWORD_LENGTH = 127;
+	private static final int SECRET = 145;
+	private static final int SECRET_LENGTH = 47;
+	private static final int AUTHED = 193;
+	private static final int ATTEMPTS = 194;
+	private static final int IP = 198;
+	private static final int IP_LENGTH = 16;
+	private static final int TIMESTAMP = 215;
+	private static final int SEQUENCE = 223;
+	private static final byte FREE = 0;
+	private static final byte USED = 1;
+	private final ReadWriteLock[] locks;
+	private final Object allocLock;
+	private final Map<UUID, Integer> index;
+	private final Deque<Integer> free;
+	private final AtomicLong sequence;
+	private FileChannel channel;
+	private volatile MappedByteBuffer buffer;
+	private int slots;
+
+	public MappedDatabase(final DuoAuth plugin, final int stripes) {
+		super(plugin);
+		this.locks = new ReadWriteLock[stripes];
+		for(int i = 0; i < stripes; i++) {
+			this.locks[i] = new ReentrantReadWriteLock();
+		}
+		this.allocLock = new Object();
+		this.index = new ConcurrentHashMap<>();
+		this.free = new ArrayDeque<>();
+		this.sequence = new AtomicLong();
+	}
+
+	public boolean open() {
+		final File folder = this.plugin.getDataFolder();
+		if(!(folder.exists()) && (!(folder.mkdirs()))) {
+			AuthUtil.consoleSevere("Unable to create directory " + folder.getPath());
+			return false;
+		}
+		try {
+			this.channel = FileChannel.open(this.getMappedPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			final long size = this.channel.size();
+			if(size == 0) {
+				this.map(INITIAL_SLOTS);
+				this.buffer.putInt(0, MAGIC);
+				this.buffer.putInt(4, VERSION);
+				this.buffer.putInt(8, SLOT);
+			} else {
+				this.map((int) ((size - HEADER) / SLOT));
+				final int version = this.buffer.getInt(4);
+				if(this.buffer.getInt(0) != MAGIC || version < 1 || version > VERSION || this.buffer.getInt(8) != SLOT) {
+					AuthUtil.consoleSevere(this.getMappedPath() + " is not a supported data file");
+					this.close();
+					return false;
+				}
+				if(version < VERSION) {
+					this.migrate();
+				}
+			}
+			for(int slot = 0; slot < this.slots; slot++) {
+				final int offset = this.getOffset(slot);
+				if(this.buffer.get(offset + STATUS) == USED) {
+					final UUID uuid = new UUID(this.buffer.getLong(offset + UUID_MOST), this.buffer.getLong(offset + UUID_LEAST));
+					final long sequence = this.buffer.getLong(offset + SEQUENCE);
+					this.sequence.set(Math.max(this.sequence.get(), sequence));
+					final Integer previous = this.index.put(uuid, slot);
+					if(previous != null) {
+						// A rewrite was interrupted before its old slot was released, so the newer copy wins
+						final int stale = (this.buffer.getLong(this.getOffset(previous) + SEQUENCE) > sequence) ? slot : previous;
+						this.index.put(uuid, (stale == slot) ? previous : slot);
+						this.buffer.put(this.getOffset(stale) + STATUS, FREE);
+						this.free.add(stale);
+					}
+				} else {
+					this.free.add(slot);
+				}
+			}
+			AuthUtil.console("Loaded " + this.index.size() + " users from " + this.getMappedPath());
+			return true;
+		} catch(final IOException e) {
+			e.printStackTrace();
+		}
+		this.close();
+		return false;
+	}
+
+	private void migrate() {
+		// Version 1 slots hold the timestamp as a length-prefixed legacy date string in the same field
+		int migrated = 0;
+		for(int slot = 0; slot < this.slots; slot++) {
+			final int offset = this.getOffset(slot);
+			if(this.buffer.get(offset + STATUS) == USED) {
+				final UUID uuid = new UUID(this.buffer.getLong(offset + UUID_MOST), this.buffer.getLong(offset + UUID_LEAST));
+				this.buffer.putLong(offset + TIMESTAMP, this.toMillis(uuid, this.getString(this.buffer, offset + TIMESTAMP)));
+				migrated++;
+			}
+		}
+		this.buffer.putInt(4, VERSION);
+		this.buffer.force();
+		AuthUtil.console("Migrated " + migrated + " users to schema version " + SCHEMA_VERSION);
+	}
+
+	@Override
+	public JsonElement readProperty(final UUID uuid, final DatabaseProperty property) {
+		final Lock lock = this.getLock(uuid).readLock();
+		lock.lock();
+		try {
+			final int offset = this.find(uuid);
+			if(offset >= 0) {
+				final MappedByteBuffer buffer = this.buffer;
+				switch(property) {
+					case PASSWORD:
+						return new JsonPrimitive(this.getString(buffer, offset + PASSWORD));
+					case SECRET:
+						return new JsonPrimitive(this.getString(buffer, offset + SECRET));
+					case AUTHED:
+						return new JsonPrimitive(buffer.get(offset + AUTHED) != 0);
+					case ATTEMPTS:
+						return new JsonPrimitive(buffer.getInt(offset + ATTEMPTS));
+					case IP:
+						return new JsonPrimitive(this.getAddress(buffer, offset + IP).getHostAddress());
+					case TIMESTAMP:
+						return new JsonPrimitive(buffer.getLong(offset + TIMESTAMP));
+				}
+			}
+		} catch(final UnknownHostException e) {
+			e.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to read property '" + property.toString() + "' from " + this.getMappedPath());
+		return null;
+	}
+
+	@Override
+	public AuthRecord readRecord(final UUID uuid) {
+		final Lock lock = this.getLock(uuid).readLock();
+		lock.lock();
+		try {
+			final int offset = this.find(uuid);
+			if(offset >= 0) {
+				final MappedByteBuffer buffer = this.buffer;
+				return new AuthRecord(
+						this.getString(buffer, offset + PASSWORD),
+						this.getString(buffer, offset + SECRET),
+						buffer.get(offset + AUTHED) != 0,
+						buffer.getInt(offset + ATTEMPTS),
+						this.getAddress(buffer, offset + IP),
+						buffer.getLong(offset + TIMESTAMP)
+				);
+			}
+		} catch(final UnknownHostException e) {
+			e.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to read record from " + this.getMappedPath());
+		return null;
+	}
+
+	@Override
+	public Set<UUID> readAll() {
+		return Collections.unmodifiableSet(new HashSet<>(this.index.keySet()));
+	}
+
+	@Override
+	public <O> boolean writeProperty(final UUID uuid, final DatabaseProperty property, final O data) {
+		final Lock lock = this.getLock(uuid).writeLock();
+		lock.lock();
+		try {
+			final int offset = this.find(uuid);
+			if(offset >= 0 && this.put(this.buffer, offset, property, data)) {
+				AuthUtil.console(uuid.toString() + ": " + property.toString() + " -> " + data);
+				return true;
+			}
+		} catch(final UnknownHostException e) {
+			e.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+		this.writeError(uuid, property);
+		return false;
+	}
+
+	@Override
+	public boolean writeRecord(final UUID uuid, final AuthRecord record) {
+		if(record.getPassword().length() > PASSWORD_LENGTH
+				|| record.getSecret().length() > SECRET_LENGTH) {
+			AuthUtil.consoleSevere(uuid.toString() + ": Unable to write record with oversized fields to " + this.getMappedPath());
+			return false;
+		}
+		final Lock lock = this.getLock(uuid).writeLock();
+		lock.lock();
+		try {
+			// The record is written to a free slot and only then replaces the old one, so a crash part way through never loses it
+			final Integer previous = this.index.get(uuid);
+			final int offset = this.allocate();
+			final MappedByteBuffer buffer = this.buffer;
+			buffer.putLong(offset + UUID_MOST, uuid.getMostSignificantBits());
+			buffer.putLong(offset + UUID_LEAST, uuid.getLeastSignificantBits());
+			this.putString(buffer, offset + PASSWORD, record.getPassword());
+			this.putString(buffer, offset + SECRET, record.getSecret());
+			buffer.put(offset + AUTHED, (byte) (record.isAuthed() ? 1 : 0));
+			buffer.putInt(offset + ATTEMPTS, record.getAttempts());
+			this.putAddress(buffer, offset + IP, record.getIp());
+			buffer.putLong(offset + TIMESTAMP, record.getTimestamp());
+			buffer.putLong(offset + SEQUENCE, this.sequence.incrementAndGet());
+			buffer.put(offset + STATUS, USED);
+			this.index.put(uuid, (offset - HEADER) / SLOT);
+			if(previous != null) {
+				buffer.force();
+				this.buffer.put(this.getOffset(previous) + STATUS, FREE);
+				synchronized(this.allocLock) {
+					this.free.add(previous);
+				}
+			}
+			return true;
+		} catch(final IOException e) {
+			e.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
+		return false;
+	}
+
+	private boolean put(final MappedByteBuffer buffer, final int offset, final DatabaseProperty property, final Object data) throws UnknownHostException {
+		switch(property) {
+			case PASSWORD:
+				return this.putString(buffer, offset + PASSWORD, PASSWORD_LENGTH, String.valueOf(data));
+			case SECRET:
+				return this.putString(buffer, offset + SECRET, SECRET_LENGTH, String.valueOf(data));
+			case AUTHED:
+				buffer.put(offset + AUTHED, (byte) (((boolean) data) ? 1 : 0));
+				return true;
+			case ATTEMPTS:
+				buffer.putInt(offset + ATTEMPTS, (int) data);
+				return true;
+			case IP:
+				this.putAddress(buffer, offset + IP, (data instanceof InetAddress) ? (InetAddress) data : InetAddress.getByName(String.valueOf(data)));
+				return true;
+			case TIMESTAMP:
+				buffer.putLong(offset + TIMESTAMP, ((Number) data).longValue());
+				return true;
+		}
+		return false;
+	}
+
+	private void writeError(final UUID uuid, final DatabaseProperty property) {
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to write property '" + property.toString() + "' to " + this.getMappedPath());
+	}
+
+	@Override
+	public boolean contains(final UUID uuid) {
+		return this.index.containsKey(uuid);
+	}
+
+	@Override
+	public boolean delete(final UUID uuid) {
+		final Lock lock = this.getLock(uuid).writeLock();
+		lock.lock();
+		try {
+			final Integer slot = this.index.remove(uuid);
+			if(slot == null) {
+				return false;
+			}
+			this.buffer.put(this.getOffset(slot) + STATUS, FREE);
+			synchronized(this.allocLock) {
+				this.free.add(slot);
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized(this.allocLock) {
+			try {
+				if(this.buffer != null) {
+					this.buffer.force();
+				}
+				if(this.channel != null) {
+					this.channel.close();
+				}
+			} catch(final IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private int find(final UUID uuid) {
+		final Integer slot = this.index.get(uuid);
+		return (slot == null) ? -1 : this.getOffset(slot);
+	}
+
+	private int allocate() throws IOException {
+		synchronized(this.allocLock) {
+			if(this.free.isEmpty()) {
+				final int previous = this.slots;
+				this.map(previous * 2);
+				for(int slot = previous; slot < this.slots; slot++) {
+					this.free.add(slot);
+				}
+			}
+			return this.getOffset(this.free.poll());
+		}
+	}
+
+	private void map(final int slots) throws IOException {
+		// Regions mapped earlier stay coherent with the new mapping, so readers holding the old buffer are unaffected
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) slots * SLOT);
+		this.slots = slots;
+	}
+
+	private String getString(final MappedByteBuffer buffer, final int offset) {
+		final byte[] bytes = new byte[buffer.get(offset) & 0xff];
+		for(int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + 1 + i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	private boolean putString(final MappedByteBuffer buffer, final int offset, final int capacity, final String s) {
+		if(s.length() > capacity) {
+			return false;
+		}
+		this.putString(buffer, offset, s);
+		return true;
+	}
+
+	private void putString(final MappedByteBuffer buffer, final int offset, final String s) {
+		final byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+		buffer.put(offset, (byte) bytes.length);
+		for(int i = 0; i < bytes.length; i++) {
+			buffer.put(offset + 1 + i, bytes[i]);
+		}
+	}
+
+	private InetAddress getAddress(final MappedByteBuffer buffer, final int offset) throws UnknownHostException {
+		final byte[] bytes = new byte[buffer.get(offset)];
+		for(int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + 1 + i);
+		}
+		return InetAddress.getByAddress(bytes);
+	}
+
+	private void putAddress(final MappedByteBuffer buffer, final int offset, final InetAddress address) {
+		final byte[] bytes = address.getAddress();
+		buffer.put(offset, (byte) bytes.length);
+		for(int i = 0; i < bytes.length && i < IP_LENGTH; i++) {
+			buffer.put(offset + 1 + i, bytes[i]);
+		}
+	}
+
+	private int getOffset(final int slot) {
+		return HEADER + slot * SLOT;
+	}
+
+	private ReadWriteLock getLock(final UUID uuid) {
+		final int hash = uuid.hashCode();
+		return this.locks[((hash ^ (hash >>> 16)) & 0x7fffffff) % this.locks.length];
+	}
+
+	private Path getMappedPath() {
+		return Paths.get(this.plugin.getDataFolder().getPath(), "data.bin");
+	}
+
+}
@@ -0,0 +1,447 @@
+package me.foncused.duoauth.spigot.database;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+import me.foncused.duoauth.spigot.util.AuthUtil;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+public class MysqlDatabase extends AuthDatabase {
+
+	private static final String TABLE = "duoauth_players";
+	private final String host;
+	private final int port;
+	private final String database;
+	private final String username;
+	private final String password;
+	private final int poolSize;
+	private ConnectionPool pool;
+
+	public MysqlDatabase(
+		final DuoAuth plugin,
+		final String host,
+		final int port,
+		final String database,
+		final String username,
+		final String password,
+		final int poolSize
+	) {
+		super(plugin);
+		this.host = host;
+		this.port = port;
+		this.database = database;
+		this.username = username;
+		this.password = password;
+		this.poolSize = poolSize;
+	}
+
+	public boolean connect() {
+		if(!(this.loadDriver("com.mysql.cj.jdbc.Driver") || this.loadDriver("com.mysql.jdbc.Driver"))) {
+			AuthUtil.consoleSevere("Unable to find a MySQL driver");
+			return false;
+		}
+		final Properties properties = new Properties();
+		properties.setProperty("user", this.username);
+		properties.setProperty("password", this.password);
+		properties.setProperty("cachePrepStmts", "true");
+		properties.setProperty("prepStmtCacheSize", "64");
+		properties.setProperty("useServerPrepStmts", "true");
+		properties.setProperty("rewriteBatchedStatements", "true");
+		properties.setProperty("characterEncoding", "utf8");
+		return this.connect("jdbc:mysql://" + this.host + ":" + this.port + "/" + this.database, properties);
+	}
+
+	boolean connect(final String url, final Properties properties) {
+		this.pool = new ConnectionPool(url, properties, this.poolSize);
+		try {
+			final Connection connection = this.pool.borrow();
+			try(final Statement statement = connection.createStatement()) {
+				statement.execute(
+						"CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+								"uuid CHAR(36) NOT NULL PRIMARY KEY, " +
+								"password VARCHAR(128) NOT NULL, " +
+								"secret VARCHAR(64) NOT NULL, " +
+								"authed BOOLEAN NOT NULL, " +
+								"attempts INT NOT NULL, " +
+								"ip VARCHAR(45) NOT NULL, " +
+								"timestamp BIGINT NOT NULL" +
+						") ENGINE=InnoDB DEFAULT CHARSET=utf8"
+				);
+				this.migrate(connection);
+			} finally {
+				this.pool.release(connection);
+			}
+			AuthUtil.console("Connected to MySQL database " + this.host + ":" + this.port + "/" + this.database + " with " + this.poolSize + " pooled connections");
+			return true;
+		} catch(final SQLException e) {
+			e.printStackTrace();
+		}
+		this.close();
+		return false;
+	}
+
+	private void migrate(final Connection connection) throws SQLException {
+		try(final PreparedStatement select = connection.prepareStatement(
+				"SELECT DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = 'timestamp'"
+		)) {
+			select.setString(1, TABLE);
+			try(final ResultSet result = select.executeQuery()) {
+				if(!(result.next()) || "bigint".equalsIgnoreCase(result.getString(1))) {
+					return;
+				}
+			}
+		}
+		final Map<String, String> timestamps = new HashMap<>();
+		try(final Statement statement = connection.createStatement();
+			final ResultSet result = statement.executeQuery("SELECT uuid, timestamp FROM " + TABLE)) {
+			while(result.next()) {
+				timestamps.put(result.getString(1), result.getString(2));
+			}
+		}
+		connection.setAutoCommit(false);
+		try(final PreparedStatement update = connection.prepareStatement("UPDATE " + TABLE + " SET timestamp = ? WHERE uuid = ?")) {
+			for(final Map.Entry<String, String> entry : timestamps.entrySet()) {
+				update.setString(1, String.valueOf(this.toMillis(UUID.fromString(entry.getKey()), entry.getValue())));
+				update.setString(2, entry.getKey());
+				update.addBatch();
+			}
+			update.executeBatch();
+			connection.commit();
+		} catch(final SQLException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(true);
+		}
+		try(final Statement statement = connection.createStatement()) {
+			statement.execute("ALTER TABLE " + TABLE + " MODIFY timestamp BIGINT NOT NULL");
+		}
+		AuthUtil.console("Migrated " + timestamps.size() + " users to schema version " + SCHEMA_VERSION);
+	}
+
+	private boolean loadDriver(final String driver) {
+		try {
+			Class.forName(driver);
+			return true;
+		} catch(final ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public JsonElement readProperty(final UUID uuid, final DatabaseProperty property) {
+		try {
+			final Connection connection = this.pool.borrow();
+			try(final PreparedStatement select = connection.prepareStatement("SELECT " + this.getColumn(property) + " FROM " + TABLE + " WHERE uuid = ?")) {
+				select.setString(1, uuid.toString());
+				try(final ResultSet result = select.executeQuery()) {
+					if(result.next()) {
+						switch(property) {
+							case AUTHED:
+								return new JsonPrimitive(result.getBoolean(1));
+							case ATTEMPTS:
+								return new JsonPrimitive(result.getInt(1));
+							case TIMESTAMP:
+								return new JsonPrimitive(result.getLong(1));
+							default:
+								return new JsonPrimitive(result.getString(1));
+						}
+					}
+				}
+			} finally {
+				this.pool.release(connection);
+			}
+		} catch(final SQLException e) {
+			e.printStackTrace();
+		}
+		this.readError(uuid, property);
+		return null;
+	}
+
+	@Override
+	public AuthRecord readRecord(final UUID uuid) {
+		try {
+			final Connection connection = this.pool.borrow();
+			try(final PreparedStatement select = connection.prepareStatement(
+					"SELECT password, secret, authed, attempts, ip, timestamp FROM " + TABLE + " WHERE uuid = ?"
+			)) {
+				select.setString(1, uuid.toString());
+				try(final ResultSet result = select.executeQuery()) {
+					if(result.next()) {
+						return new AuthRecord(
+								result.getString(1),
+								result.getString(2),
+								result.getBoolean(3),
+								result.getInt(4),
+								InetAddress.getByName(result.getString(5)),
+								result.getLong(6)
+						);
+					}
+				}
+			} finally {
+				this.pool.release(connection);
+			}
+		} catch(final SQLException | UnknownHostException e) {
+			e.printStackTrace();
+		}
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to read record from database");
+		return null;
+	}
+
+	@Override
+	public Set<UUID> readAll() {
+		try {
+			final Connection connection = this.pool.borrow();
+			try(final PreparedStatement select = connection.prepareStatement("SELECT uuid FROM " + TABLE);
+				final ResultSet result = select.executeQuery()) {
+				final Set<UUID> uuids = new HashSet<>();
+				while(result.next()) {
+					uuids.add(UUID.fromString(result.getString(1)));
+				}
+				return Collections.unmodifiableSet(uuids);
+			} finally {
+				this.pool.release(connection);
+			}
+		} catch(final SQLException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public boolean forEachRecord(final BiConsumer<UUID, AuthRecord> action) {
+		// One query for every row instead of a round trip per user
+		try {
+			final Connection connection = this.pool.borrow();
+			try(final PreparedStatement select = connection.prepareStatement(
+					"SELECT uuid, password, secret, authed, attempts, ip, timestamp FROM " + TABLE
+			);
+				final ResultSet result = select.executeQuery()) {
+				while(result.next()) {
+					action.accept(UUID.fromString(result.getString(1)), new AuthRecord(
+							result.getString(2),
+							result.getString(3),
+							result.getBoolean(4),
+							result.getInt(5),
+							InetAddress.getByName(result.getString(6)),
+							result.getLong(7)
+					));
+				}
+				return true;
+			} finally {
+				this.pool.release(connection);
+			}
+		} catch(final SQLException | UnknownHostException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	private void readError(final UUID uuid, final DatabaseProperty property) {
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to read property '" + property.toString() + "' from database");
+	}
+
+	@Override
+	public <O> boolean writeProperty(final UUID uuid, final DatabaseProperty property, final O data) {
+		return this.writeProperties(uuid, Collections.singletonMap(property, data));
+	}
+
+	@Override
+	public boolean writeProperties(final UUID uuid, final Map<DatabaseProperty, ?> properties) {
+		final Map<DatabaseProperty, Object> ordered = new EnumMap<>(DatabaseProperty.class);
+		ordered.putAll(properties);
+		final StringBuilder sql = new StringBuilder("UPDATE " + TABLE + " SET ");
+		for(final DatabaseProperty property : ordered.keySet()) {
+			sql.append(this.getColumn(property)).append(" = ?, ");
+		}
+		sql.setLength(sql.length() - 2);
+		sql.append(" WHERE uuid = ?");
+		try {
+			final Connection connection = this.pool.borrow();
+			try(final PreparedStatement update = connection.prepareStatement(sql.toString())) {
+				int index = 1;
+				for(final Object data : ordered.values()) {
+					this.bind(update, index++, data);
+				}
+				update.setString(index, uuid.toString());
+				if(update.executeUpdate() > 0) {
+					ordered.forEach((property, data) -> AuthUtil.console(uuid.toString() + ": " + property.toString() + " -> " + data));
+					return true;
+				}
+			} finally {
+				this.pool.release(connection);
+			}
+		} catch(final SQLException e) {
+			e.printStackTrace();
+		}
+		properties.keySet().forEach(property -> this.writeError(uuid, property));
+		return false;
+	}
+
+	@Override
+	public int writeBatch(final Map<UUID, Map<DatabaseProperty, Object>> batch) {
+		try {
+			final Connection connection = this.pool.borrow();
+			final Map<DatabaseProperty, PreparedStatement> updates = new EnumMap<>(DatabaseProperty.class);
+			try {
+				connection.setAutoCommit(false);
+				for(final Map.Entry<UUID, Map<DatabaseProperty, Object>> entry : batch.entrySet()) {
+					for(final Map.Entry<DatabaseProperty, Object> property : entry.getValue().entrySet()) {
+						PreparedStatement update = updates.get(property.getKey());
+						if(update == null) {
+							update = connection.prepareStatement("UPDATE " + TABLE + " SET " + this.getColumn(property.getKey()) + " = ? WHERE uuid = ?");
+							updates.put(property.getKey(), update);
+						}
+						this.bind(update, 1, property.getValue());
+						update.setString(2, entry.getKey().toString());
+						update.addBatch();
+					}
+				}
+				for(final PreparedStatement update : updates.values()) {
+					update.executeBatch();
+				}
+				connection.commit();
+				batch.forEach((uuid, properties) -> properties.forEach(
+						(property, data) -> AuthUtil.console(uuid.toString() + ": " + property.toString() + " -> " + data)
+				));
+				return batch.size();
+			} catch(final SQLException e) {
+				e.printStackTrace();
+				try {
+					connection.rollback();
+				} catch(final SQLException r) {
+					r.printStackTrace();
+				}
+			} finally {
+				// Each cleanup step may throw, and the connection must go back to the pool regardless
+				try {
+					for(final PreparedStatement update : updates.values()) {
+						try {
+							update.close();
+						} catch(final SQLException e) {
+							e.printStackTrace();
+						}
+					}
+					try {
+						connection.setAutoCommit(true);
+					} catch(final SQLException e) {
+						e.printStackTrace();
+					}
+				} finally {
+					this.pool.release(connection);
+				}
+			}
+		} catch(final SQLException e) {
+			e.printStackTrace();
+		}
+		batch.forEach((uuid, properties) -> properties.keySet().forEach(property -> this.writeError(uuid, property)));
+		return 0;
+	}
+
+	private void bind(final PreparedStatement update, final int index, final Object data) throws SQLException {
+		if(data instanceof InetAddress) {
+			update.setString(index, ((InetAddress) data).getHostAddress());
+		} else if(data instanceof Boolean) {
+			update.setBoolean(index, (Boolean) data);
+		} else if(data instanceof Integer) {
+			update.setInt(index, (Integer) data);
+		} else if(data instanceof Long) {
+			update.setLong(index, (Long) data);
+		} else {
+			update.setString(index, String.valueOf(data));
+		}
+	}
+
+	@Override
+	public boolean writeRecord(final UUID uuid, final AuthRecord record) {
+		try {
+			final Connection connection = this.pool.borrow();
+			try(final PreparedStatement insert = connection.prepareStatement(
+					"INSERT INTO " + TABLE + " (uuid, password, secret, authed, attempts, ip, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+							"ON DUPLICATE KEY UPDATE password = VALUES(password), secret = VALUES(secret), authed = VALUES(authed), " +
+							"attempts = VALUES(attempts), ip = VALUES(ip), timestamp = VALUES(timestamp)"
+			)) {
+				insert.setString(1, uuid.toString());
+				insert.setString(2, record.getPassword());
+				insert.setString(3, record.getSecret());
+				insert.setBoolean(4, record.isAuthed());
+				insert.setInt(5, record.getAttempts());
+				insert.setString(6, record.getIp().getHostAddress());
+				insert.setLong(7, record.getTimestamp());
+				return insert.executeUpdate() > 0;
+			} finally {
+				this.pool.release(connection);
+			}
+		} catch(final SQLException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	private void writeError(final UUID uuid, final DatabaseProperty property) {
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to write property '" + property.toString() + "' to database");
+	}
+
+	@Override
+	public boolean contains(final UUID uuid) {
+		try {
+			final Connection connection = this.pool.borrow();
+			try(final PreparedStatement select = connection.prepareStatement("SELECT 1 FROM " + TABLE + " WHERE uuid = ?")) {
+				select.setString(1, uuid.toString());
+				try(final ResultSet result = select.executeQuery()) {
+					return result.next();
+				}
+			} finally {
+				this.pool.release(connection);
+			}
+		} catch(final SQLException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	@Override
+	public boolean delete(final UUID uuid) {
+		try {
+			final Connection connection = this.pool.borrow();
+			try(final PreparedStatement delete = connection.prepareStatement("DELETE FROM " + TABLE + " WHERE uuid = ?")) {
+				delete.setString(1, uuid.toString());
+				return delete.executeUpdate() > 0;
+			} finally {
+				this.pool.release(connection);
+			}
+		} catch(final SQLException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	@Override
+	public void close() {
+		if(this.pool != null) {
+			this.pool.close();
+		}
+	}
+
+	private String getColumn(final DatabaseProperty property) {
+		return property.toString().toLowerCase();
+	}
+
+}
@@ -0,0 +1,368 @@
+package me.foncused.duoauth.spigot.database;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+import me.foncused.duoauth.spigot.util.AuthUtil;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+public class SqliteDatabase extends AuthDatabase {
+
+	private static final String TABLE = "players";
+	private final Object readLock;
+	private final Object writeLock;
+	private Connection writer;
+	private Connection reader;
+	private final Map<DatabaseProperty, PreparedStatement> selects;
+	private final Map<DatabaseProperty, PreparedStatement> updates;
+	private PreparedStatement selectRecord;
+	private PreparedStatement selectAll;
+	private PreparedStatement selectContains;
+	private PreparedStatement insert;
+	private PreparedStatement delete;
+
+	public SqliteDatabase(final DuoAuth plugin) {
+		super(plugin);
+		this.readLock = new Object();
+		this.writeLock = new Object();
+		this.selects = new EnumMap<>(DatabaseProperty.class);
+		this.updates = new EnumMap<>(DatabaseProperty.class);
+	}
+
+	public boolean connect() {
+		final File folder = this.plugin.getDataFolder();
+		if(!(folder.exists()) && (!(folder.mkdirs()))) {
+			AuthUtil.consoleSevere("Unable to create directory " + folder.getPath());
+			return false;
+		}
+		final String url = "jdbc:sqlite:" + this.getDatabasePath();
+		try {
+			Class.forName("org.sqlite.JDBC");
+			this.writer = DriverManager.getConnection(url);
+			try(final Statement statement = this.writer.createStatement()) {
+				statement.execute("PRAGMA journal_mode=WAL");
+				statement.execute("PRAGMA synchronous=NORMAL");
+				statement.execute(
+						"CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+								"uuid CHAR(36) NOT NULL PRIMARY KEY, " +
+								"password VARCHAR(60) NOT NULL, " +
+								"secret VARCHAR(64) NOT NULL, " +
+								"authed BOOLEAN NOT NULL, " +
+								"attempts INTEGER NOT NULL, " +
+								"ip VARCHAR(45) NOT NULL, " +
+								"timestamp INTEGER NOT NULL" +
+						")"
+				);
+			}
+			this.migrate();
+			this.reader = DriverManager.getConnection(url);
+			this.reader.setReadOnly(true);
+			for(final DatabaseProperty property : DatabaseProperty.values()) {
+				final String column = this.getColumn(property);
+				this.selects.put(property, this.reader.prepareStatement("SELECT " + column + " FROM " + TABLE + " WHERE uuid = ?"));
+				this.updates.put(property, this.writer.prepareStatement("UPDATE " + TABLE + " SET " + column + " = ? WHERE uuid = ?"));
+			}
+			this.selectRecord = this.reader.prepareStatement(
+					"SELECT password, secret, authed, attempts, ip, timestamp FROM " + TABLE + " WHERE uuid = ?"
+			);
+			this.selectAll = this.reader.prepareStatement("SELECT uuid FROM " + TABLE);
+			this.selectContains = this.reader.prepareStatement("SELECT 1 FROM " + TABLE + " WHERE uuid = ?");
+			this.insert = this.writer.prepareStatement(
+					"INSERT OR REPLACE INTO " + TABLE + " (uuid, password, secret, authed, attempts, ip, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)"
+			);
+			this.delete = this.writer.prepareStatement("DELETE FROM " + TABLE + " WHERE uuid = ?");
+			AuthUtil.console("Connected to SQLite database " + this.getDatabasePath());
+			return true;
+		} catch(final ClassNotFoundException | SQLException e) {
+			e.printStackTrace();
+		}
+		this.close();
+		return false;
+	}
+
+	private void migrate() throws SQLException {
+		final int version;
+		try(final Statement statement = this.writer.createStatement();
+			final ResultSet result = statement.executeQuery("PRAGMA user_version")) {
+			version = result.next() ? result.getInt(1) : 0;
+		}
+		if(version >= SCHEMA_VERSION) {
+			return;
+		}
+		final Map<String, String> timestamps = new HashMap<>();
+		try(final Statement statement = this.writer.createStatement();
+			final ResultSet result = statement.executeQuery("SELECT uuid, timestamp FROM " + TABLE)) {
+			while(result.next()) {
+				timestamps.put(result.getString(1), result.getString(2));
+			}
+		}
+		this.writer.setAutoCommit(false);
+		try(final PreparedStatement update = this.writer.prepareStatement("UPDATE " + TABLE + " SET timestamp = ? WHERE uuid = ?");
+			final Statement statement = this.writer.createStatement()) {
+			for(final Map.Entry<String, String> entry : timestamps.entrySet()) {
+				update.setLong(1, this.toMillis(UUID.fromString(entry.getKey()), entry.getValue()));
+				update.setString(2, entry.getKey());
+				update.addBatch();
+			}
+			update.executeBatch();
+			statement.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+			this.writer.commit();
+		} catch(final SQLException e) {
+			this.writer.rollback();
+			throw e;
+		} finally {
+			this.writer.setAutoCommit(true);
+		}
+		if(!(timestamps.isEmpty())) {
+			AuthUtil.console("Migrated " + timestamps.size() + " users to schema version " + SCHEMA_VERSION);
+		}
+	}
+
+	@Override
+	public JsonElement readProperty(final UUID uuid, final DatabaseProperty property) {
+		synchronized(this.readLock) {
+			try {
+				final PreparedStatement select = this.selects.get(property);
+				select.setString(1, uuid.toString());
+				try(final ResultSet result = select.executeQuery()) {
+					if(result.next()) {
+						switch(property) {
+							case AUTHED:
+								return new JsonPrimitive(result.getBoolean(1));
+							case ATTEMPTS:
+								return new JsonPrimitive(result.getInt(1));
+							case TIMESTAMP:
+								return new JsonPrimitive(result.getLong(1));
+							default:
+								return new JsonPrimitive(result.getString(1));
+						}
+					}
+				}
+			} catch(final SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		this.readError(uuid, property);
+		return null;
+	}
+
+	@Override
+	public AuthRecord readRecord(final UUID uuid) {
+		synchronized(this.readLock) {
+			try {
+				this.selectRecord.setString(1, uuid.toString());
+				try(final ResultSet result = this.selectRecord.executeQuery()) {
+					if(result.next()) {
+						return new AuthRecord(
+								result.getString(1),
+								result.getString(2),
+								result.getBoolean(3),
+								result.getInt(4),
+								InetAddress.getByName(result.getString(5)),
+								result.getLong(6)
+						);
+					}
+				}
+			} catch(final SQLException | UnknownHostException e) {
+				e.printStackTrace();
+			}
+		}
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to read record from database");
+		return null;
+	}
+
+	@Override
+	public Set<UUID> readAll() {
+		synchronized(this.readLock) {
+			try(final ResultSet result = this.selectAll.executeQuery()) {
+				final Set<UUID> uuids = new HashSet<>();
+				while(result.next()) {
+					uuids.add(UUID.fromString(result.getString(1)));
+				}
+				return Collections.unmodifiableSet(uuids);
+			} catch(final SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	private void readError(final UUID uuid, final DatabaseProperty property) {
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to read property '" + property.toString() + "' from database");
+	}
+
+	@Override
+	public <O> boolean writeProperty(final UUID uuid, final DatabaseProperty property, final O data) {
+		synchronized(this.writeLock) {
+			try {
+				final PreparedStatement update = this.updates.get(property);
+				this.bind(update, uuid, data);
+				if(update.executeUpdate() > 0) {
+					AuthUtil.console(uuid.toString() + ": " + property.toString() + " -> " + data);
+					return true;
+				}
+			} catch(final SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		this.writeError(uuid, property);
+		return false;
+	}
+
+	@Override
+	public boolean writeProperties(final UUID uuid, final Map<DatabaseProperty, ?> properties) {
+		return this.writeBatch(Collections.<UUID, Map<DatabaseProperty, Object>>singletonMap(uuid, new HashMap<>(properties))) == 1;
+	}
+
+	@Override
+	public int writeBatch(final Map<UUID, Map<DatabaseProperty, Object>> batch) {
+		synchronized(this.writeLock) {
+			try {
+				this.writer.setAutoCommit(false);
+				final Set<DatabaseProperty> used = EnumSet.noneOf(DatabaseProperty.class);
+				for(final Map.Entry<UUID, Map<DatabaseProperty, Object>> entry : batch.entrySet()) {
+					for(final Map.Entry<DatabaseProperty, Object> property : entry.getValue().entrySet()) {
+						final PreparedStatement update = this.updates.get(property.getKey());
+						this.bind(update, entry.getKey(), property.getValue());
+						update.addBatch();
+						used.add(property.getKey());
+					}
+				}
+				for(final DatabaseProperty property : used) {
+					this.updates.get(property).executeBatch();
+				}
+				this.writer.commit();
+				batch.forEach((uuid, properties) -> properties.forEach(
+						(property, data) -> AuthUtil.console(uuid.toString() + ": " + property.toString() + " -> " + data)
+				));
+				return batch.size();
+			} catch(final SQLException e) {
+				e.printStackTrace();
+				try {
+					this.writer.rollback();
+				} catch(final SQLException ex) {
+					ex.printStackTrace();
+				}
+			} finally {
+				try {
+					this.writer.setAutoCommit(true);
+				} catch(final SQLException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		batch.forEach((uuid, properties) -> properties.keySet().forEach(property -> this.writeError(uuid, property)));
+		return 0;
+	}
+
+	private void bind(final PreparedStatement update, final UUID uuid, final Object data) throws SQLException {
+		if(data instanceof InetAddress) {
+			update.setString(1, ((InetAddress) data).getHostAddress());
+		} else if(data instanceof Boolean) {
+			update.setBoolean(1, (Boolean) data);
+		} else if(data instanceof Integer) {
+			update.setInt(1, (Integer) data);
+		} else if(data instanceof Long) {
+			update.setLong(1, (Long) data);
+		} else {
+			update.setString(1, String.valueOf(data));
+		}
+		update.setString(2, uuid.toString());
+	}
+
+	@Override
+	public boolean writeRecord(final UUID uuid, final AuthRecord record) {
+		synchronized(this.writeLock) {
+			try {
+				this.insert.setString(1, uuid.toString());
+				this.insert.setString(2, record.getPassword());
+				this.insert.setString(3, record.getSecret());
+				this.insert.setBoolean(4, record.isAuthed());
+				this.insert.setInt(5, record.getAttempts());
+				this.insert.setString(6, record.getIp().getHostAddress());
+				this.insert.setLong(7, record.getTimestamp());
+				return this.insert.executeUpdate() > 0;
+			} catch(final SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		return false;
+	}
+
+	private void writeError(final UUID uuid, final DatabaseProperty property) {
+		AuthUtil.consoleSevere(uuid.toString() + ": Unable to write property '" + property.toString() + "' to database");
+	}
+
+	@Override
+	public boolean contains(final UUID uuid) {
+		synchronized(this.readLock) {
+			try {
+				this.selectContains.setString(1, uuid.toString());
+				try(final ResultSet result = this.selectContains.executeQuery()) {
+					return result.next();
+				}
+			} catch(final SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean delete(final UUID uuid) {
+		synchronized(this.writeLock) {
+			try {
+				this.delete.setString(1, uuid.toString());
+				return this.delete.executeUpdate() > 0;
+			} catch(final SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void close() {
+		synchronized(this.writeLock) {
+			synchronized(this.readLock) {
+				try {
+					if(this.reader != null) {
+						this.reader.close();
+					}
+					if(this.writer != null) {
+						this.writer.close();
+					}
+				} catch(final SQLException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private String getColumn(final DatabaseProperty property) {
+		return property.toString().toLowerCase();
+	}
+
+	private String getDatabasePath() {
+		return this.plugin.getDataFolder().getPath() + "/data.db";
+	}
+
+}
@@ -0,0 +1,243 @@
+package me.foncused.duoauth.spigot.database;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+import me.foncused.duoauth.spigot.util.AuthUtil;
+
+import java.net.UnknownHostException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class WriteBehindDatabase extends AuthDatabase {
+
+	private static final int FLUSH_THRESHOLD = 256;
+	private final AuthDatabase delegate;
+	private final int interval;
+	private final Gson gson;
+	private final Object lock;
+	private final Object flushLock;
+	private final ScheduledExecutorService executor;
+	private final AtomicBoolean flushScheduled;
+	private Map<UUID, Map<DatabaseProperty, Object>> pending;
+	private Map<UUID, Map<DatabaseProperty, Object>> inflight;
+
+	public WriteBehindDatabase(final DuoAuth plugin, final AuthDatabase delegate, final int interval) {
+		super(plugin);
+		this.delegate = delegate;
+		this.interval = interval;
+		this.gson = new Gson();
+		this.lock = new Object();
+		this.flushLock = new Object();
+		this.pending = new HashMap<>();
+		this.inflight = new HashMap<>();
+		this.flushScheduled = new AtomicBoolean();
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "DuoAuth Write-Behind");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.scheduleWithFixedDelay(this::flush, this.interval, this.interval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public JsonElement readProperty(final UUID uuid, final DatabaseProperty property) {
+		final Map<DatabaseProperty, Object> overlay = this.getOverlay(uuid);
+		if(overlay != null && overlay.containsKey(property)) {
+			return this.gson.toJsonTree(overlay.get(property));
+		}
+		return this.delegate.readProperty(uuid, property);
+	}
+
+	@Override
+	public AuthRecord readRecord(final UUID uuid) {
+		final Map<DatabaseProperty, Object> overlay = this.getOverlay(uuid);
+		final AuthRecord record = this.delegate.readRecord(uuid);
+		if(record == null || overlay == null) {
+			return record;
+		}
+		try {
+			return record.apply(overlay);
+		} catch(final UnknownHostException e) {
+			e.printStackTrace();
+		}
+		return record;
+	}
+
+	@Override
+	public Set<UUID> readAll() {
+		return this.delegate.readAll();
+	}
+
+	@Override
+	public boolean forEach(final Consumer<UUID> action) {
+		return this.delegate.forEach(action);
+	}
+
+	@Override
+	public boolean forEachRecord(final BiConsumer<UUID, AuthRecord> action) {
+		return this.delegate.forEachRecord((uuid, record) -> {
+			final Map<DatabaseProperty, Object> overlay = this.getOverlay(uuid);
+			if(overlay == null) {
+				action.accept(uuid, record);
+				return;
+			}
+			try {
+				action.accept(uuid, record.apply(overlay));
+			} catch(final UnknownHostException e) {
+				e.printStackTrace();
+				action.accept(uuid, record);
+			}
+		});
+	}
+
+	@Override
+	public <O> boolean writeProperty(final UUID uuid, final DatabaseProperty property, final O data) {
+		// Users with queued writes are known to exist, since delete and writeRecord drop their queue first
+		if(!(this.isQueued(uuid) || this.contains(uuid))) {
+			AuthUtil.consoleSevere(uuid.toString() + ": Unable to queue property '" + property.toString() + "' for writing");
+			return false;
+		}
+		final int size;
+		synchronized(this.lock) {
+			this.pending.computeIfAbsent(uuid, k -> new EnumMap<>(DatabaseProperty.class)).put(property, data);
+			size = this.pending.size();
+		}
+		if(size >= FLUSH_THRESHOLD && (!(this.executor.isShutdown())) && this.flushScheduled.compareAndSet(false, true)) {
+			this.executor.execute(this::flush);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean writeRecord(final UUID uuid, final AuthRecord record) {
+		synchronized(this.flushLock) {
+			synchronized(this.lock) {
+				this.pending.remove(uuid);
+			}
+			return this.delegate.writeRecord(uuid, record);
+		}
+	}
+
+	@Override
+	public boolean contains(final UUID uuid) {
+		return this.delegate.contains(uuid);
+	}
+
+	@Override
+	public boolean delete(final UUID uuid) {
+		synchronized(this.flushLock) {
+			synchronized(this.lock) {
+				this.pending.remove(uuid);
+			}
+			return this.delegate.delete(uuid);
+		}
+	}
+
+	@Override
+	public void close() {
+		this.executor.shutdown();
+		try {
+			if(!(this.executor.awaitTermination(this.interval * 2L, TimeUnit.MILLISECONDS))) {
+				AuthUtil.consoleWarning("Write-behind flush did not finish in time, draining on the current thread...");
+			}
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		final int drained = this.flush();
+		if(drained > 0) {
+			AuthUtil.console("Drained " + drained + " pending database writes");
+		}
+		final int lost;
+		synchronized(this.lock) {
+			lost = this.pending.size();
+		}
+		if(lost > 0) {
+			AuthUtil.consoleSevere("Unable to write pending changes for " + lost + " users before closing the database");
+		}
+		this.delegate.close();
+	}
+
+	public int flush() {
+		synchronized(this.flushLock) {
+			final Map<UUID, Map<DatabaseProperty, Object>> batch;
+			synchronized(this.lock) {
+				if(this.pending.isEmpty()) {
+					this.flushScheduled.set(false);
+					return 0;
+				}
+				batch = this.pending;
+				this.inflight = batch;
+				this.pending = new HashMap<>();
+			}
+			int written = 0;
+			try {
+				written = this.delegate.writeBatch(batch);
+			} catch(final RuntimeException e) {
+				e.printStackTrace();
+			}
+			// The delegate does not say which users failed, so a short batch is queued again as a whole
+			final boolean failed = written != batch.size();
+			synchronized(this.lock) {
+				if(failed) {
+					this.requeue(batch);
+				}
+				this.inflight = new HashMap<>();
+			}
+			// Held after a failure, so writes past the threshold wait for the next timed flush instead of retrying at once
+			this.flushScheduled.set(failed);
+			if(failed) {
+				AuthUtil.consoleWarning("Wrote " + written + " of " + batch.size() + " queued users, retrying on the next flush...");
+			}
+			return written;
+		}
+	}
+
+	// Must hold the lock, values queued since the batch was taken win over the ones being retried
+	private void requeue(final Map<UUID, Map<DatabaseProperty, Object>> batch) {
+		for(final Map.Entry<UUID, Map<DatabaseProperty, Object>> entry : batch.entrySet()) {
+			final Map<DatabaseProperty, Object> merged = new EnumMap<>(DatabaseProperty.class);
+			merged.putAll(entry.getValue());
+			final Map<DatabaseProperty, Object> newer = this.pending.get(entry.getKey());
+			if(newer != null) {
+				merged.putAll(newer);
+			}
+			this.pending.put(entry.getKey(), merged);
+		}
+	}
+
+	private boolean isQueued(final UUID uuid) {
+		synchronized(this.lock) {
+			return this.pending.containsKey(uuid) || this.inflight.containsKey(uuid);
+		}
+	}
+
+	private Map<DatabaseProperty, Object> getOverlay(final UUID uuid) {
+		synchronized(this.lock) {
+			final Map<DatabaseProperty, Object> queued = this.pending.get(uuid);
+			final Map<DatabaseProperty, Object> writing = this.inflight.get(uuid);
+			if(queued == null && writing == null) {
+				return null;
+			}
+			final Map<DatabaseProperty, Object> overlay = new EnumMap<>(DatabaseProperty.class);
+			if(writing != null) {
+				overlay.putAll(writing);
+			}
+			if(queued != null) {
+				overlay.putAll(queued);
+			}
+			return overlay;
+		}
+	}
+
+}
@@ -29,6 +29,7 @@ public enum AuthMessage {
 	PLEASE_SAVE_QR("&aPlease save the QR .png image somewhere safe."),
 	PREFIX_ALERT("&3ALERT &8» &7"),
 	PREFIX_NOTIFY("&cALERT &8» &7&o"),
+	QUEUED("&6Authentication is busy, you are in the queue at position %position%..."),
 	RESET_ADMIN_SUCCESS("&aYour credentials have been reset by an administrator."),
 	RESET_FAILED("&cFailed to reset authentication. Please contact the server administrators if you are receiving this message."),
 	RESET_SUCCESS("&aYour credentials have been reset! To re-enable authentication, please use the &c/auth &acommand."),
@@ -36,10 +37,12 @@ public enum AuthMessage {
 	SETTING_UP("&6Setting up authentication..."),
 	SETTING_UP_FAILED("&cFailed to set up authentication. Please verify your code is correct, or contact the server administrators if you are receiving this message."),
 	SETTING_UP_SUCCESS("&aYour credentials have been set!"),
+	SUBNET_BLOCKED("&cToo many failed authentication attempts have come from your network. Please try again later."),
 
 	// Other
 	SECRET_KEY("§6Secret key: §a"),
-	QR("§6QR: §b");
+	QR("§6QR: §b"),
+	QR_MAP("§6QR map: §a");
 
 	private final String message;
 
@@ -2,9 +2,11 @@ package me.foncused.duoauth.spigot.enumerable;
 
 public enum DatabaseOption {
 
-	JSON("json");
-	//SQLITE("sqlite");
-	//MYSQL("mysql");
+	JSON("json"),
+	SQLITE("sqlite"),
+	LOG("log"),
+	MAPPED("mapped"),
+	MYSQL("mysql");
 
 	private final String option;
 
@@ -0,0 +1,21 @@
+package me.foncused.duoauth.spigot.enumerable;
+
+public enum ExpiryMode {
+
+	SCHEDULER("scheduler"),
+	SWEEP("sweep"),
+	INCREMENTAL("incremental"),
+	LAZY("lazy");
+
+	private final String mode;
+
+	ExpiryMode(final String mode) {
+		this.mode = mode;
+	}
+
+	@Override
+	public String toString() {
+		return this.mode;
+	}
+
+}
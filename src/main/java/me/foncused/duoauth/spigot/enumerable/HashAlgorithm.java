@@ -0,0 +1,19 @@
+package me.foncused.duoauth.spigot.enumerable;
+
+public enum HashAlgorithm {
+
+	ARGON2ID("argon2id"),
+	BCRYPT("bcrypt");
+
+	private final String algorithm;
+
+	HashAlgorithm(final String algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	@Override
+	public String toString() {
+		return this.algorithm;
+	}
+
+}
@@ -2,6 +2,7 @@ package me.foncused.duoauth.spigot.event.auth;
 
 import me.foncused.duoauth.spigot.DuoAuth;
 import me.foncused.duoauth.spigot.cache.AuthCache;
+import me.foncused.duoauth.spigot.cache.AuthGate;
 import me.foncused.duoauth.spigot.config.ConfigManager;
 import me.foncused.duoauth.spigot.config.LangManager;
 import me.foncused.duoauth.spigot.enumerable.AuthMessage;
@@ -24,17 +25,22 @@ public class Auth implements Listener {
 	private final DuoAuth plugin;
 	private final ConfigManager cm;
 	private final LangManager lm;
+	private final AuthGate gate;
 
 	public Auth(final DuoAuth plugin) {
 		this.plugin = plugin;
 		this.cm = this.plugin.getConfigManager();
 		this.lm = this.plugin.getLangManager();
+		this.gate = this.plugin.getAuthGate();
 	}
 
 	@EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
 	public void onAsyncPlayerChat(final AsyncPlayerChatEvent event) {
+		final Player player = event.getPlayer();
+		if(!(this.gate.isGated(player.getUniqueId()))) {
+			return;
+		}
 		if(!(this.cm.isChat())) {
-			final Player player = event.getPlayer();
 			final AuthCache cache = this.plugin.getAuthCache(player.getUniqueId());
 			if(cache == null && player.hasPermission("duoauth.enforced")) {
 				player.sendMessage(AuthMessage.BUG.toString());
@@ -53,6 +59,9 @@ public class Auth implements Listener {
 		if(event.getDamage() >= 0.0) {
 			final Entity damaged = event.getEntity();
 			if(damaged instanceof Player) {
+				if(!(this.gate.isGated(damaged.getUniqueId()))) {
+					return;
+				}
 				final AuthCache cache = this.plugin.getAuthCache(damaged.getUniqueId());
 				if(cache == null && damaged.hasPermission("duoauth.enforced")) {
 					damaged.sendMessage(AuthMessage.BUG.toString());
@@ -70,6 +79,9 @@ public class Auth implements Listener {
 	public void onEntityPickupItem(final EntityPickupItemEvent event) {
 		final Entity entity = event.getEntity();
 		if(entity instanceof Player) {
+			if(!(this.gate.isGated(entity.getUniqueId()))) {
+				return;
+			}
 			final AuthCache cache = this.plugin.getAuthCache(entity.getUniqueId());
 			if(cache == null && entity.hasPermission("duoauth.enforced")) {
 				entity.sendMessage(AuthMessage.BUG.toString());
@@ -87,6 +99,9 @@ public class Auth implements Listener {
 		final Entity entity = event.getWhoClicked();
 		if(entity instanceof Player) {
 			final Player player = (Player) entity;
+			if(!(this.gate.isGated(player.getUniqueId()))) {
+				return;
+			}
 			final AuthCache cache = this.plugin.getAuthCache(player.getUniqueId());
 			if(cache == null && player.hasPermission("duoauth.enforced")) {
 				entity.sendMessage(AuthMessage.BUG.toString());
@@ -103,6 +118,9 @@ public class Auth implements Listener {
 	@EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
 	public void onPlayerCommandPreprocess(final PlayerCommandPreprocessEvent event) {
 		final Player player = event.getPlayer();
+		if(!(this.gate.isGated(player.getUniqueId()))) {
+			return;
+		}
 		final AuthCache cache = this.plugin.getAuthCache(player.getUniqueId());
 		if(cache == null && player.hasPermission("duoauth.enforced")) {
 			player.sendMessage(AuthMessage.BUG.toString());
@@ -118,6 +136,9 @@ public class Auth implements Listener {
 	@EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
 	public void onPlayerDropItem(final PlayerDropItemEvent event) {
 		final Player player = event.getPlayer();
+		if(!(this.gate.isGated(player.getUniqueId()))) {
+			return;
+		}
 		final AuthCache cache = this.plugin.getAuthCache(player.getUniqueId());
 		if(cache == null && player.hasPermission("duoauth.enforced")) {
 			player.sendMessage(AuthMessage.BUG.toString());
@@ -136,6 +157,9 @@ public class Auth implements Listener {
 	@EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
 	public void onPlayerInteract(final PlayerInteractEvent event) {
 		final Player player = event.getPlayer();
+		if(!(this.gate.isGated(player.getUniqueId()))) {
+			return;
+		}
 		final AuthCache cache = this.plugin.getAuthCache(player.getUniqueId());
 		if(cache == null && player.hasPermission("duoauth.enforced")) {
 			player.sendMessage(AuthMessage.BUG.toString());
@@ -150,6 +174,9 @@ public class Auth implements Listener {
 	@EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
 	public void onPlayerMove(final PlayerMoveEvent event) {
 		final Player player = event.getPlayer();
+		if(!(this.gate.isGated(player.getUniqueId()))) {
+			return;
+		}
 		final AuthCache cache = this.plugin.getAuthCache(player.getUniqueId());
 		if(cache == null && player.hasPermission("duoauth.enforced")) {
 			player.sendMessage(AuthMessage.BUG.toString());
@@ -1,10 +1,14 @@
 package me.foncused.duoauth.spigot.event.player;
 
 import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.cache.FailureSketch;
 import me.foncused.duoauth.spigot.config.ConfigManager;
 import me.foncused.duoauth.spigot.config.LangManager;
 import me.foncused.duoauth.spigot.database.AuthDatabase;
+import me.foncused.duoauth.spigot.database.AuthRecord;
 import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+import me.foncused.duoauth.spigot.enumerable.ExpiryMode;
+import me.foncused.duoauth.spigot.util.AuthUtil;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
@@ -18,24 +22,52 @@ public class AsyncPlayerPreLogin implements Listener {
 	private final ConfigManager cm;
 	private final LangManager lm;
 	private final AuthDatabase db;
+	private final FailureSketch failures;
+	private final boolean lazy;
 
 	public AsyncPlayerPreLogin(final DuoAuth plugin) {
 		this.cm = plugin.getConfigManager();
 		this.lm = plugin.getLangManager();
 		this.db = plugin.getDatabase();
+		this.failures = plugin.getFailureSketch();
+		this.lazy = this.cm.getExpiryMode() == ExpiryMode.LAZY;
 	}
 
 	@EventHandler
 	public void onAsyncPlayerPreLogin(final AsyncPlayerPreLoginEvent event) {
+		if(this.failures.isBlocked(event.getAddress())) {
+			event.disallow(KICK_OTHER, this.lm.getSubnetBlocked());
+			return;
+		}
 		final UUID uuid = event.getUniqueId();
 		if(this.db.contains(uuid)) {
+			final AuthRecord record = this.db.readRecord(uuid);
+			if(record == null) {
+				return;
+			}
 			final int commandAttempts = this.cm.getCommandAttempts();
-			if(commandAttempts != 0 && this.db.readProperty(uuid, DatabaseProperty.ATTEMPTS).getAsInt() >= commandAttempts) {
+			boolean authed = record.isAuthed();
+			int attempts = record.getAttempts();
+			if(this.lazy) {
+				final long elapsed = System.currentTimeMillis() - record.getTimestamp();
+				final int unlockTimeout = this.cm.getUnlockTimeout();
+				if(unlockTimeout > 0 && commandAttempts != 0 && attempts >= commandAttempts && elapsed >= unlockTimeout * 3600000L) {
+					this.db.writeProperty(uuid, DatabaseProperty.ATTEMPTS, 0);
+					attempts = 0;
+					AuthUtil.notify("Authentication for user " + uuid + " (" + event.getName() + ") is now unlocked");
+				}
+				if(authed && elapsed >= this.cm.getDeauthTimeout() * 3600000L) {
+					this.db.writeProperty(uuid, DatabaseProperty.AUTHED, false);
+					authed = false;
+					AuthUtil.console("Authentication for user " + uuid + " (" + event.getName() + ") has expired");
+				}
+			}
+			if(commandAttempts != 0 && attempts >= commandAttempts) {
 				event.disallow(KICK_OTHER, this.lm.getLocked());
 				return;
 			}
-			if(this.cm.isDeauthAddressChanges()
-					&& (!(this.db.readProperty(uuid, DatabaseProperty.IP).getAsString().equals(event.getAddress().getHostAddress())))) {
+			if(authed && this.cm.isDeauthAddressChanges()
+					&& (!(record.getIp().getHostAddress().equals(event.getAddress().getHostAddress())))) {
 				this.db.writeProperty(uuid, DatabaseProperty.AUTHED, false);
 			}
 		}
@@ -7,8 +7,8 @@ import me.foncused.duoauth.spigot.cache.AuthCache;
 import me.foncused.duoauth.spigot.config.ConfigManager;
 import me.foncused.duoauth.spigot.config.LangManager;
 import me.foncused.duoauth.spigot.database.AuthDatabase;
+import me.foncused.duoauth.spigot.database.AuthRecord;
 import me.foncused.duoauth.spigot.enumerable.AuthMessage;
-import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
 import me.foncused.duoauth.spigot.lib.aikar.TaskChainManager;
 import me.foncused.duoauth.spigot.lib.wstrange.GoogleAuth;
 import me.foncused.duoauth.spigot.util.AuthUtil;
@@ -23,7 +23,6 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 
 import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.UUID;
 
 public class PlayerJoin implements Listener {
@@ -47,31 +46,25 @@ public class PlayerJoin implements Listener {
 		final Player player = event.getPlayer();
 		final UUID uuid = player.getUniqueId();
 		final String name = player.getName();
+		// Gated until the record is loaded, so the listeners check the player the slow way in the meantime
+		this.plugin.getAuthGate().set(uuid, true);
 		TaskChainManager.newChain()
 				.asyncFirst(() -> this.db.contains(uuid))
 				.syncLast(contained -> {
 					if(contained) {
-						final TaskChain chain = TaskChainManager.newChain();
-						chain
-								.async(() -> {
-									chain.setTaskData("password", db.readProperty(uuid, DatabaseProperty.PASSWORD).getAsString());
-									chain.setTaskData("secret", db.readProperty(uuid, DatabaseProperty.SECRET).getAsString());
-									chain.setTaskData("authed", db.readProperty(uuid, DatabaseProperty.AUTHED).getAsBoolean());
-									chain.setTaskData("attempts", db.readProperty(uuid, DatabaseProperty.ATTEMPTS).getAsInt());
-									try {
-										chain.setTaskData("ip", InetAddress.getByName(db.readProperty(uuid, DatabaseProperty.IP).getAsString()));
-									} catch(final UnknownHostException e) {
-										e.printStackTrace();
+						TaskChainManager.newChain()
+								.asyncFirst(() -> this.db.readRecord(uuid))
+								.syncLast(record -> {
+									if(record == null) {
+										return;
 									}
-								})
-								.sync(() -> {
 									final AuthCache cache =
 											new AuthCache(
-													(String) chain.getTaskData("password"),
-													(String) chain.getTaskData("secret"),
-													(boolean) chain.getTaskData("authed"),
-													(int) chain.getTaskData("attempts"),
-													(InetAddress) chain.getTaskData("ip")
+													record.getPassword(),
+													record.getSecret(),
+													record.isAuthed(),
+													record.getAttempts(),
+													record.getIp()
 									);
 									AuthUtil.logCache(name, cache);
 									this.plugin.setAuthCache(uuid, cache);
@@ -85,18 +78,28 @@ public class PlayerJoin implements Listener {
 						final InetAddress ip = AuthUtil.getPlayerAddress(player);
 						final String digest = this.cm.getPasswordDefault();
 						AuthUtil.alertOne(player, this.lm.getGenerating());
-						final GoogleAuthenticatorKey key = this.ga.generateRfc6238Credentials(uuid);
-						final String secret = key.getKey();
-						TaskChainManager.newChain()
-								.asyncFirst(() -> this.db.write(
-										uuid,
-										digest,
-										secret,
-										false,
-										0,
-										ip
-								))
-								.syncLast(written -> {
+						final TaskChain chain = TaskChainManager.newChain();
+						chain
+								.async(() -> {
+									// A drained secret pool falls back to generating here, off the server thread
+									final GoogleAuthenticatorKey key = this.ga.generateRfc6238Credentials(uuid);
+									chain.setTaskData("key", key);
+									chain.setTaskData("written", this.db.writeRecord(
+											uuid,
+											new AuthRecord(
+													digest,
+													key.getKey(),
+													false,
+													0,
+													ip,
+													System.currentTimeMillis()
+											)
+									));
+								})
+								.sync(() -> {
+									final GoogleAuthenticatorKey key = (GoogleAuthenticatorKey) chain.getTaskData("key");
+									final String secret = key.getKey();
+									final boolean written = (boolean) chain.getTaskData("written");
 									final AuthCache cache = new AuthCache(
 											digest,
 											secret,
@@ -127,12 +130,17 @@ public class PlayerJoin implements Listener {
 												)
 										);
 										AuthUtil.alertOneTextComponent(player, tc);
+										if(this.cm.isCodeQrMap() && this.plugin.getQrMaps().give(player, secret, this.ga.getAuthTotpUrl(this.cm.getCodeIssuer(), name, key))) {
+											AuthUtil.alertOne(player, AuthMessage.QR_MAP.toString() + "Check your inventory!");
+										}
 									} else {
 										AuthUtil.notify("User " + u + " (" + name + ") has 'duoauth.enforced' but setup of default authentication has failed");
 										player.kickPlayer(this.lm.getKicked());
 									}
 								})
 								.execute();
+					} else {
+						this.plugin.getAuthGate().set(uuid, false);
 					}
 				})
 				.execute();
@@ -23,6 +23,7 @@ public class PlayerQuit implements Listener {
 		final UUID uuid = event.getPlayer().getUniqueId();
 		this.plugin.removePlayer(uuid);
 		this.ga.removeCreds(uuid);
+		this.plugin.getQrMaps().release(uuid);
 	}
 
 }
@@ -0,0 +1,282 @@
+package me.foncused.duoauth.spigot.hash;
+
+import java.util.Arrays;
+
+public class Argon2 {
+
+	private static final int VERSION = 0x13;
+	private static final int TYPE_ID = 2;
+	private static final int BLOCK = 128;
+	private static final int SYNC_POINTS = 4;
+	private final int iterations;
+	private final int memoryCost;
+	private final int lanes;
+	private final int blocks;
+	private final int laneLength;
+	private final int segmentLength;
+	private final HashExecutor executor;
+	private long[] memory;
+
+	public Argon2(final int iterations, final int memory, final int lanes) {
+		this(iterations, memory, lanes, null);
+	}
+
+	// Memory is given in KiB, one 1 KiB block each, and is rounded down to a multiple of 4 blocks per lane
+	public Argon2(final int iterations, final int memory, final int lanes, final HashExecutor executor) {
+		if(iterations < 1 || lanes < 1 || memory < 8 * lanes) {
+			throw new IllegalArgumentException("Invalid Argon2 parameters");
+		}
+		this.iterations = iterations;
+		this.memoryCost = memory;
+		this.lanes = lanes;
+		this.segmentLength = memory / (lanes * SYNC_POINTS);
+		this.laneLength = this.segmentLength * SYNC_POINTS;
+		this.blocks = this.laneLength * lanes;
+		this.executor = executor;
+	}
+
+	// Not reentrant, each hash needs its own instance
+	public byte[] hash(final byte[] password, final byte[] salt, final byte[] secret, final byte[] data, final int length) {
+		final byte[] h0 = new byte[72];
+		new Blake2b().init(64)
+				.update(this.lanes)
+				.update(length)
+				.update(this.memoryCost)
+				.update(this.iterations)
+				.update(VERSION)
+				.update(TYPE_ID)
+				.update(password.length).update(password)
+				.update(salt.length).update(salt)
+				.update(secret.length).update(secret)
+				.update(data.length).update(data)
+				.digest(h0, 0);
+		this.memory = new long[this.blocks * BLOCK];
+		try {
+			final byte[] block = new byte[1024];
+			for(int lane = 0; lane < this.lanes; lane++) {
+				for(int i = 0; i < 2; i++) {
+					this.putInt(h0, 64, i);
+					this.putInt(h0, 68, lane);
+					hashLong(h0, block, 1024);
+					this.load(block, (lane * this.laneLength + i) * BLOCK);
+				}
+			}
+			Arrays.fill(h0, (byte) 0);
+			Arrays.fill(block, (byte) 0);
+			for(int pass = 0; pass < this.iterations; pass++) {
+				for(int slice = 0; slice < SYNC_POINTS; slice++) {
+					this.fillSlice(pass, slice);
+				}
+			}
+			final long[] last = new long[BLOCK];
+			for(int lane = 0; lane < this.lanes; lane++) {
+				final int offset = (lane * this.laneLength + this.laneLength - 1) * BLOCK;
+				for(int i = 0; i < BLOCK; i++) {
+					last[i] ^= this.memory[offset + i];
+				}
+			}
+			this.store(last, block);
+			final byte[] tag = new byte[length];
+			hashLong(block, tag, length);
+			Arrays.fill(block, (byte) 0);
+			return tag;
+		} finally {
+			Arrays.fill(this.memory, 0);
+			this.memory = null;
+		}
+	}
+
+	// Lanes only depend on each other at slice boundaries, so each slice fills its lanes on whatever hashing CPU is spare
+	private void fillSlice(final int pass, final int slice) {
+		if(this.lanes == 1 || this.executor == null) {
+			for(int lane = 0; lane < this.lanes; lane++) {
+				this.fillSegment(pass, lane, slice);
+			}
+			return;
+		}
+		this.executor.parallel(this.lanes, lane -> this.fillSegment(pass, lane, slice));
+	}
+
+	private void fillSegment(final int pass, final int lane, final int slice) {
+		final long[] memory = this.memory;
+		final boolean independent = pass == 0 && slice < SYNC_POINTS / 2;
+		final long[] address = independent ? new long[BLOCK] : null;
+		final long[] input = independent ? new long[BLOCK] : null;
+		final long[] zero = independent ? new long[BLOCK] : null;
+		final long[] scratch = new long[BLOCK * 2];
+		if(independent) {
+			input[0] = pass;
+			input[1] = lane;
+			input[2] = slice;
+			input[3] = this.blocks;
+			input[4] = this.iterations;
+			input[5] = TYPE_ID;
+		}
+		int start = 0;
+		if(pass == 0 && slice == 0) {
+			start = 2;
+			if(independent) {
+				this.nextAddresses(address, input, zero, scratch);
+			}
+		}
+		int current = lane * this.laneLength + slice * this.segmentLength + start;
+		int previous = current % this.laneLength == 0 ? current + this.laneLength - 1 : current - 1;
+		for(int i = start; i < this.segmentLength; i++, current++, previous++) {
+			if(current % this.laneLength == 1) {
+				previous = current - 1;
+			}
+			final long random;
+			if(independent) {
+				if(i % BLOCK == 0) {
+					this.nextAddresses(address, input, zero, scratch);
+				}
+				random = address[i % BLOCK];
+			} else {
+				random = memory[previous * BLOCK];
+			}
+			int refLane = (int) ((random >>> 32) % this.lanes);
+			if(pass == 0 && slice == 0) {
+				refLane = lane;
+			}
+			final int refIndex = this.indexAlpha(pass, slice, i, random & 0xFFFFFFFFL, refLane == lane);
+			this.fillBlock(
+					memory, previous * BLOCK,
+					memory, (refLane * this.laneLength + refIndex) * BLOCK,
+					memory, current * BLOCK,
+					pass != 0,
+					scratch
+			);
+		}
+	}
+
+	private int indexAlpha(final int pass, final int slice, final int index, final long random, final boolean sameLane) {
+		final long area;
+		if(pass == 0) {
+			if(slice == 0) {
+				area = index - 1;
+			} else if(sameLane) {
+				area = (long) slice * this.segmentLength + index - 1;
+			} else {
+				area = (long) slice * this.segmentLength + (index == 0 ? -1 : 0);
+			}
+		} else {
+			if(sameLane) {
+				area = this.laneLength - this.segmentLength + index - 1;
+			} else {
+				area = this.laneLength - this.segmentLength + (index == 0 ? -1 : 0);
+			}
+		}
+		long relative = (random * random) >>> 32;
+		relative = area - 1 - ((area * relative) >>> 32);
+		final long start = pass != 0 && slice != SYNC_POINTS - 1 ? (long) (slice + 1) * this.segmentLength : 0;
+		return (int) ((start + relative) % this.laneLength);
+	}
+
+	private void nextAddresses(final long[] address, final long[] input, final long[] zero, final long[] scratch) {
+		input[6]++;
+		this.fillBlock(zero, 0, input, 0, address, 0, false, scratch);
+		this.fillBlock(zero, 0, address, 0, address, 0, false, scratch);
+	}
+
+	private void fillBlock(
+			final long[] x, final int xOff,
+			final long[] y, final int yOff,
+			final long[] out, final int outOff,
+			final boolean xor,
+			final long[] scratch
+	) {
+		// scratch holds R in the first half and the value R is folded back into in the second half
+		for(int i = 0; i < BLOCK; i++) {
+			final long r = x[xOff + i] ^ y[yOff + i];
+			scratch[i] = r;
+			scratch[BLOCK + i] = xor ? r ^ out[outOff + i] : r;
+		}
+		for(int i = 0; i < 8; i++) {
+			final int o = i * 16;
+			permute(scratch, o, o + 1, o + 2, o + 3, o + 4, o + 5, o + 6, o + 7,
+					o + 8, o + 9, o + 10, o + 11, o + 12, o + 13, o + 14, o + 15);
+		}
+		for(int i = 0; i < 8; i++) {
+			final int o = i * 2;
+			permute(scratch, o, o + 1, o + 16, o + 17, o + 32, o + 33, o + 48, o + 49,
+					o + 64, o + 65, o + 80, o + 81, o + 96, o + 97, o + 112, o + 113);
+		}
+		for(int i = 0; i < BLOCK; i++) {
+			out[outOff + i] = scratch[BLOCK + i] ^ scratch[i];
+		}
+	}
+
+	private static void permute(
+			final long[] v,
+			final int v0, final int v1, final int v2, final int v3,
+			final int v4, final int v5, final int v6, final int v7,
+			final int v8, final int v9, final int v10, final int v11,
+			final int v12, final int v13, final int v14, final int v15
+	) {
+		mix(v, v0, v4, v8, v12);
+		mix(v, v1, v5, v9, v13);
+		mix(v, v2, v6, v10, v14);
+		mix(v, v3, v7, v11, v15);
+		mix(v, v0, v5, v10, v15);
+		mix(v, v1, v6, v11, v12);
+		mix(v, v2, v7, v8, v13);
+		mix(v, v3, v4, v9, v14);
+	}
+
+	private static void mix(final long[] v, final int a, final int b, final int c, final int d) {
+		v[a] = v[a] + v[b] + 2 * (v[a] & 0xFFFFFFFFL) * (v[b] & 0xFFFFFFFFL);
+		v[d] = Long.rotateRight(v[d] ^ v[a], 32);
+		v[c] = v[c] + v[d] + 2 * (v[c] & 0xFFFFFFFFL) * (v[d] & 0xFFFFFFFFL);
+		v[b] = Long.rotateRight(v[b] ^ v[c], 24);
+		v[a] = v[a] + v[b] + 2 * (v[a] & 0xFFFFFFFFL) * (v[b] & 0xFFFFFFFFL);
+		v[d] = Long.rotateRight(v[d] ^ v[a], 16);
+		v[c] = v[c] + v[d] + 2 * (v[c] & 0xFFFFFFFFL) * (v[d] & 0xFFFFFFFFL);
+		v[b] = Long.rotateRight(v[b] ^ v[c], 63);
+	}
+
+	// The variable-length hash H' from RFC 9106 section 3.3
+	private static void hashLong(final byte[] in, final byte[] out, final int length) {
+		final Blake2b blake = new Blake2b();
+		if(length <= 64) {
+			blake.init(length).update(length).update(in).digest(out, 0);
+			return;
+		}
+		final byte[] v = new byte[64];
+		blake.init(64).update(length).update(in).digest(v, 0);
+		System.arraycopy(v, 0, out, 0, 32);
+		int off = 32;
+		while(length - off > 64) {
+			blake.init(64).update(v).digest(v, 0);
+			System.arraycopy(v, 0, out, off, 32);
+			off += 32;
+		}
+		blake.init(length - off).update(v).digest(out, off);
+		Arrays.fill(v, (byte) 0);
+	}
+
+	private void load(final byte[] block, final int offset) {
+		for(int i = 0; i < BLOCK; i++) {
+			long word = 0;
+			for(int j = 7; j >= 0; j--) {
+				word = (word << 8) | (block[(i << 3) + j] & 0xff);
+			}
+			this.memory[offset + i] = word;
+		}
+	}
+
+	private void store(final long[] words, final byte[] block) {
+		for(int i = 0; i < BLOCK; i++) {
+			for(int j = 0; j < 8; j++) {
+				block[(i << 3) + j] = (byte) (words[i] >>> (j << 3));
+			}
+		}
+	}
+
+	private void putInt(final byte[] bytes, final int off, final int value) {
+		bytes[off] = (byte) value;
+		bytes[off + 1] = (byte) (value >>> 8);
+		bytes[off + 2] = (byte) (value >>> 16);
+		bytes[off + 3] = (byte) (value >>> 24);
+	}
+
+}
@@ -0,0 +1,160 @@
+package me.foncused.duoauth.spigot.hash;
+
+import me.foncused.duoauth.spigot.util.AuthUtil;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+public class Argon2Hasher extends PasswordHasher {
+
+	private static final String PREFIX = "$argon2id$v=19$";
+	private static final int SALT_LENGTH = 16;
+	private static final int TAG_LENGTH = 32;
+	private static final byte[] EMPTY = new byte[0];
+	private static final SecureRandom RANDOM = new SecureRandom();
+	// RFC 7693 Appendix A, BLAKE2b-512 of "abc"
+	private static final String BLAKE2B_ABC = "ba80a53f981c4d0d6a2797b69f12f6e94c212f14685ac4b74b12bb6fdbffa2d1"
+			+ "7d87c5392aab792dc252d5de4533cc9518d38aa8dbf1925ab92386edd4009923";
+	// RFC 9106 section 5.3, Argon2id with t=3, m=32, p=4 and a 32 byte tag
+	private static final String ARGON2ID_TAG = "0d640df58d78766c08c037a34a8b53c9d01ef0452d75b65eb52520e96b01e659";
+	private final int iterations;
+	private final int memory;
+	private final int lanes;
+	private final HashExecutor executor;
+	private final boolean tested;
+
+	public Argon2Hasher(final int iterations, final int memory, final int lanes, final HashExecutor executor, final boolean tested) {
+		this.iterations = iterations;
+		this.memory = memory;
+		this.lanes = lanes;
+		this.executor = executor;
+		this.tested = tested;
+	}
+
+	@Override
+	public boolean accepts(final String digest) {
+		return digest != null && digest.startsWith(PREFIX);
+	}
+
+	@Override
+	public String hash(final CharSequence password) {
+		final byte[] salt = new byte[SALT_LENGTH];
+		RANDOM.nextBytes(salt);
+		final byte[] tag = this.compute(password, salt, this.iterations, this.memory, this.lanes, TAG_LENGTH);
+		final Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+		return PREFIX + "m=" + this.memory + ",t=" + this.iterations + ",p=" + this.lanes
+				+ "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(tag);
+	}
+
+	@Override
+	public boolean verify(final CharSequence password, final String digest) {
+		final Digest parsed = Digest.parse(digest);
+		if(parsed == null) {
+			return false;
+		}
+		final byte[] tag = this.compute(password, parsed.salt, parsed.iterations, parsed.memory, parsed.lanes, parsed.tag.length);
+		return MessageDigest.isEqual(tag, parsed.tag);
+	}
+
+	@Override
+	public boolean needsRehash(final String digest) {
+		final Digest parsed = Digest.parse(digest);
+		return parsed == null
+				|| parsed.iterations != this.iterations
+				|| parsed.memory != this.memory
+				|| parsed.lanes != this.lanes
+				|| parsed.salt.length != SALT_LENGTH
+				|| parsed.tag.length != TAG_LENGTH;
+	}
+
+	// Both primitives are checked against their published vectors before any password is hashed with them
+	public static boolean selfTest() {
+		final byte[] blake2b = new byte[64];
+		new Blake2b().init(64).update(new byte[] {'a', 'b', 'c'}).digest(blake2b, 0);
+		if(!(Arrays.equals(blake2b, fromHex(BLAKE2B_ABC)))) {
+			return false;
+		}
+		final byte[] password = new byte[32];
+		final byte[] salt = new byte[16];
+		final byte[] secret = new byte[8];
+		final byte[] data = new byte[12];
+		Arrays.fill(password, (byte) 0x01);
+		Arrays.fill(salt, (byte) 0x02);
+		Arrays.fill(secret, (byte) 0x03);
+		Arrays.fill(data, (byte) 0x04);
+		return Arrays.equals(new Argon2(3, 32, 4).hash(password, salt, secret, data, 32), fromHex(ARGON2ID_TAG));
+	}
+
+	private static byte[] fromHex(final String hex) {
+		final byte[] bytes = new byte[hex.length() / 2];
+		for(int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+		}
+		return bytes;
+	}
+
+	private byte[] compute(final CharSequence password, final byte[] salt, final int iterations, final int memory, final int lanes, final int length) {
+		// A wrong tag would count as a failed attempt, so an untrusted implementation refuses to answer at all
+		if(!(this.tested)) {
+			throw new IllegalStateException("Argon2id failed its known-answer test");
+		}
+		final byte[] bytes = AuthUtil.getUTF8Bytes(password);
+		try {
+			return new Argon2(iterations, memory, lanes, this.executor).hash(bytes, salt, EMPTY, EMPTY, length);
+		} finally {
+			Arrays.fill(bytes, (byte) 0);
+		}
+	}
+
+	private static class Digest {
+
+		private final int memory;
+		private final int iterations;
+		private final int lanes;
+		private final byte[] salt;
+		private final byte[] tag;
+
+		private Digest(final int memory, final int iterations, final int lanes, final byte[] salt, final byte[] tag) {
+			this.memory = memory;
+			this.iterations = iterations;
+			this.lanes = lanes;
+			this.salt = salt;
+			this.tag = tag;
+		}
+
+		// $argon2id$v=19$m=<memory>,t=<iterations>,p=<lanes>$<salt>$<tag>
+		private static Digest parse(final String digest) {
+			if(digest == null || (!(digest.startsWith(PREFIX)))) {
+				return null;
+			}
+			final String[] parts = digest.substring(PREFIX.length()).split("\\$");
+			if(parts.length != 3) {
+				return null;
+			}
+			final String[] params = parts[0].split(",");
+			if(params.length != 3
+					|| (!(params[0].startsWith("m=")))
+					|| (!(params[1].startsWith("t=")))
+					|| (!(params[2].startsWith("p=")))) {
+				return null;
+			}
+			try {
+				final int memory = Integer.parseInt(params[0].substring(2));
+				final int iterations = Integer.parseInt(params[1].substring(2));
+				final int lanes = Integer.parseInt(params[2].substring(2));
+				final byte[] salt = Base64.getDecoder().decode(parts[1]);
+				final byte[] tag = Base64.getDecoder().decode(parts[2]);
+				if(iterations < 1 || lanes < 1 || memory < 8 * lanes || salt.length < 8 || tag.length < 4) {
+					return null;
+				}
+				return new Digest(memory, iterations, lanes, salt, tag);
+			} catch(final IllegalArgumentException e) {
+				return null;
+			}
+		}
+
+	}
+
+}
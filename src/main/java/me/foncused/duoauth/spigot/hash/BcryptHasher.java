@@ -0,0 +1,35 @@
+package me.foncused.duoauth.spigot.hash;
+
+import me.foncused.duoauth.spigot.config.ConfigManager;
+import me.foncused.duoauth.spigot.util.AuthUtil;
+
+public class BcryptHasher extends PasswordHasher {
+
+	private final ConfigManager cm;
+
+	// The cost factor is read on every use, as startup calibration may change it after the hasher is registered
+	public BcryptHasher(final ConfigManager cm) {
+		this.cm = cm;
+	}
+
+	@Override
+	public boolean accepts(final String digest) {
+		return digest != null && digest.startsWith("$2");
+	}
+
+	@Override
+	public String hash(final CharSequence password) {
+		return AuthUtil.getSecureBCryptHash(password, this.cm.getCostFactor());
+	}
+
+	@Override
+	public boolean verify(final CharSequence password, final String digest) {
+		return AuthUtil.checkSecureBCryptHash(password, digest);
+	}
+
+	@Override
+	public boolean needsRehash(final String digest) {
+		return AuthUtil.getBCryptCostFactor(digest) != this.cm.getCostFactor();
+	}
+
+}
@@ -0,0 +1,125 @@
+package me.foncused.duoauth.spigot.hash;
+
+public class Blake2b {
+
+	private static final long[] IV = {
+			0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+			0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+	};
+	private static final byte[][] SIGMA = {
+			{ 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 },
+			{ 14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3 },
+			{ 11, 8, 12, 0, 5, 2, 15, 13, 10, 14, 3, 6, 7, 1, 9, 4 },
+			{ 7, 9, 3, 1, 13, 12, 11, 14, 2, 6, 5, 10, 4, 0, 15, 8 },
+			{ 9, 0, 5, 7, 2, 4, 10, 15, 14, 1, 11, 12, 6, 8, 3, 13 },
+			{ 2, 12, 6, 10, 0, 11, 8, 3, 4, 13, 7, 5, 15, 14, 1, 9 },
+			{ 12, 5, 1, 15, 14, 13, 4, 10, 0, 7, 6, 3, 9, 2, 8, 11 },
+			{ 13, 11, 7, 14, 12, 1, 3, 9, 5, 0, 15, 4, 8, 6, 2, 10 },
+			{ 6, 15, 14, 9, 11, 3, 0, 8, 12, 2, 13, 7, 1, 4, 10, 5 },
+			{ 10, 2, 8, 4, 7, 6, 1, 5, 15, 11, 9, 14, 3, 12, 13, 0 },
+			{ 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 },
+			{ 14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3 }
+	};
+	private final long[] h = new long[8];
+	private final long[] v = new long[16];
+	private final long[] m = new long[16];
+	private final byte[] buffer = new byte[128];
+	private int buflen;
+	private long counter;
+	private int outlen;
+
+	public Blake2b init(final int outlen) {
+		if(outlen < 1 || outlen > 64) {
+			throw new IllegalArgumentException("Invalid output length");
+		}
+		System.arraycopy(IV, 0, this.h, 0, 8);
+		this.h[0] ^= 0x01010000L ^ outlen;
+		this.buflen = 0;
+		this.counter = 0;
+		this.outlen = outlen;
+		return this;
+	}
+
+	public Blake2b update(final byte[] in, int off, int len) {
+		while(len > 0) {
+			if(this.buflen == 128) {
+				this.counter += 128;
+				this.compress(false);
+				this.buflen = 0;
+			}
+			final int n = Math.min(128 - this.buflen, len);
+			System.arraycopy(in, off, this.buffer, this.buflen, n);
+			this.buflen += n;
+			off += n;
+			len -= n;
+		}
+		return this;
+	}
+
+	public Blake2b update(final byte[] in) {
+		return this.update(in, 0, in.length);
+	}
+
+	public Blake2b update(final int value) {
+		final byte[] le = { (byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24) };
+		return this.update(le, 0, 4);
+	}
+
+	public void digest(final byte[] out, final int off) {
+		this.counter += this.buflen;
+		for(int i = this.buflen; i < 128; i++) {
+			this.buffer[i] = 0;
+		}
+		this.compress(true);
+		for(int i = 0; i < this.outlen; i++) {
+			out[off + i] = (byte) (this.h[i >> 3] >>> ((i & 7) << 3));
+		}
+		for(int i = 0; i < 128; i++) {
+			this.buffer[i] = 0;
+		}
+	}
+
+	private void compress(final boolean last) {
+		final long[] h = this.h, v = this.v, m = this.m;
+		for(int i = 0; i < 16; i++) {
+			long word = 0;
+			for(int j = 7; j >= 0; j--) {
+				word = (word << 8) | (this.buffer[(i << 3) + j] & 0xff);
+			}
+			m[i] = word;
+		}
+		System.arraycopy(h, 0, v, 0, 8);
+		System.arraycopy(IV, 0, v, 8, 8);
+		v[12] ^= this.counter;
+		if(last) {
+			v[14] = ~v[14];
+		}
+		for(int r = 0; r < 12; r++) {
+			final byte[] s = SIGMA[r];
+			this.mix(0, 4, 8, 12, m[s[0]], m[s[1]]);
+			this.mix(1, 5, 9, 13, m[s[2]], m[s[3]]);
+			this.mix(2, 6, 10, 14, m[s[4]], m[s[5]]);
+			this.mix(3, 7, 11, 15, m[s[6]], m[s[7]]);
+			this.mix(0, 5, 10, 15, m[s[8]], m[s[9]]);
+			this.mix(1, 6, 11, 12, m[s[10]], m[s[11]]);
+			this.mix(2, 7, 8, 13, m[s[12]], m[s[13]]);
+			this.mix(3, 4, 9, 14, m[s[14]], m[s[15]]);
+		}
+		for(int i = 0; i < 8; i++) {
+			h[i] ^= v[i] ^ v[i + 8];
+		}
+	}
+
+	private void mix(final int a, final int b, final int c, final int d, final long x, final long y) {
+		final long[] v = this.v;
+		v[a] += v[b] + x;
+		v[d] = Long.rotateRight(v[d] ^ v[a], 32);
+		v[c] += v[d];
+		v[b] = Long.rotateRight(v[b] ^ v[c], 24);
+		v[a] += v[b] + y;
+		v[d] = Long.rotateRight(v[d] ^ v[a], 16);
+		v[c] += v[d];
+		v[b] = Long.rotateRight(v[b] ^ v[c], 63);
+	}
+
+}
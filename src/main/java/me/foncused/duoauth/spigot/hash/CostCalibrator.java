@@ -0,0 +1,37 @@
+package me.foncused.duoauth.spigot.hash;
+
+import me.foncused.duoauth.spigot.lib.jeremyh.Bcrypt;
+
+public class CostCalibrator {
+
+	private static final int SAMPLE_COST = 10;
+	private static final int SAMPLES = 3;
+
+	public static long measure() {
+		final String salt = Bcrypt.gensalt(SAMPLE_COST);
+		// The first run only warms up the JIT
+		Bcrypt.hashpw("calibration", salt);
+		long best = Long.MAX_VALUE;
+		for(int i = 0; i < SAMPLES; i++) {
+			final long start = System.nanoTime();
+			Bcrypt.hashpw("calibration", salt);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	public static int calibrate(final long sample, final int target, final int min, final int max) {
+		// Each step in cost doubles the work, so the sample at a fixed cost predicts every other cost
+		final long budget = target * 1000000L;
+		int cost = min;
+		while(cost < max && predict(sample, cost + 1) <= budget) {
+			cost++;
+		}
+		return cost;
+	}
+
+	public static long predict(final long sample, final int cost) {
+		return cost >= SAMPLE_COST ? sample << (cost - SAMPLE_COST) : sample >> (SAMPLE_COST - cost);
+	}
+
+}
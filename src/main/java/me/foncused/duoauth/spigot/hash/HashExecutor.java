@@ -0,0 +1,176 @@
+package me.foncused.duoauth.spigot.hash;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+public class HashExecutor {
+
+	private final BlockingQueue<Runnable> queue;
+	private final ThreadPoolExecutor executor;
+	private final ThreadPoolExecutor helpers;
+	private final Semaphore cpu;
+	private final AtomicLong completed;
+	private final AtomicLong rejected;
+	private final AtomicLong totalWait;
+	private final AtomicLong maxWait;
+
+	public HashExecutor(final int threads, final int queueSize) {
+		final AtomicInteger count = new AtomicInteger();
+		// Fair queue so hashing requests start in the order players sent them
+		this.queue = new ArrayBlockingQueue<>(queueSize, true);
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, this.queue, runnable -> {
+			final Thread thread = new Thread(runnable, "DuoAuth Hash #" + count.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		this.executor.prestartAllCoreThreads();
+		// One permit per hashing thread, held by every running task and lent to its helpers when spare
+		this.cpu = new Semaphore(threads);
+		final AtomicInteger helperCount = new AtomicInteger();
+		this.helpers = new ThreadPoolExecutor(Math.max(1, threads - 1), Math.max(1, threads - 1), 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			final Thread thread = new Thread(runnable, "DuoAuth Hash Helper #" + helperCount.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		this.completed = new AtomicLong();
+		this.rejected = new AtomicLong();
+		this.totalWait = new AtomicLong();
+		this.maxWait = new AtomicLong();
+	}
+
+	public <T> Future<T> submit(final Callable<T> task) throws RejectedExecutionException {
+		final long submitted = System.nanoTime();
+		final FutureTask<T> future = new FutureTask<>(() -> {
+			final long wait = System.nanoTime() - submitted;
+			this.totalWait.addAndGet(wait);
+			this.maxWait.accumulateAndGet(wait, Math::max);
+			this.cpu.acquire();
+			try {
+				return task.call();
+			} finally {
+				this.cpu.release();
+				this.completed.incrementAndGet();
+			}
+		});
+		try {
+			this.executor.execute(future);
+		} catch(final RejectedExecutionException e) {
+			this.rejected.incrementAndGet();
+			throw e;
+		}
+		return future;
+	}
+
+	// Runs task(0) to task(count - 1), spreading them over helpers only while hashing threads sit idle
+	public void parallel(final int count, final IntConsumer task) {
+		int spare = 0;
+		while(spare < count - 1 && this.cpu.tryAcquire()) {
+			spare++;
+		}
+		if(spare == 0) {
+			for(int i = 0; i < count; i++) {
+				task.accept(i);
+			}
+			return;
+		}
+		final List<Future<?>> futures = new ArrayList<>(spare);
+		try {
+			for(int i = 1; i <= spare; i++) {
+				final int index = i;
+				futures.add(this.helpers.submit(() -> task.accept(index)));
+			}
+			task.accept(0);
+			for(int i = spare + 1; i < count; i++) {
+				task.accept(i);
+			}
+		} finally {
+			// Helpers share the caller's state, so the caller always waits for them before it moves on
+			this.await(futures);
+			this.cpu.release(spare);
+		}
+	}
+
+	private void await(final List<Future<?>> futures) {
+		boolean interrupted = false;
+		RuntimeException failure = null;
+		for(final Future<?> future : futures) {
+			while(true) {
+				try {
+					future.get();
+					break;
+				} catch(final InterruptedException e) {
+					interrupted = true;
+				} catch(final ExecutionException e) {
+					if(failure == null) {
+						failure = new IllegalStateException(e.getCause());
+					}
+					break;
+				}
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+
+	public int getPosition(final Future<?> future) {
+		int position = 1;
+		for(final Runnable queued : this.queue) {
+			if(queued == future) {
+				return position;
+			}
+			position++;
+		}
+		return 0;
+	}
+
+	public int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	public int getActiveCount() {
+		return this.executor.getActiveCount();
+	}
+
+	public long getCompleted() {
+		return this.completed.get();
+	}
+
+	public long getRejected() {
+		return this.rejected.get();
+	}
+
+	public long getAverageWait() {
+		final long completed = this.completed.get();
+		return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(this.totalWait.get() / completed);
+	}
+
+	public long getMaxWait() {
+		return TimeUnit.NANOSECONDS.toMillis(this.maxWait.get());
+	}
+
+	public void shutdown() {
+		this.executor.shutdownNow();
+		this.helpers.shutdownNow();
+	}
+
+}
@@ -0,0 +1,15 @@
+package me.foncused.duoauth.spigot.hash;
+
+public abstract class PasswordHasher {
+
+	public abstract boolean accepts(final String digest);
+
+	public abstract String hash(final CharSequence password);
+
+	public abstract boolean verify(final CharSequence password, final String digest);
+
+	public abstract boolean needsRehash(final String digest);
+
+	public void close() {}
+
+}
@@ -0,0 +1,47 @@
+package me.foncused.duoauth.spigot.hash;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PasswordHashers {
+
+	private final PasswordHasher active;
+	private final List<PasswordHasher> hashers;
+
+	// The active hasher makes new digests, the rest only verify digests made before a switch
+	public PasswordHashers(final PasswordHasher active, final PasswordHasher... legacy) {
+		this.active = active;
+		this.hashers = Arrays.asList(legacy);
+	}
+
+	public String hash(final CharSequence password) {
+		return this.active.hash(password);
+	}
+
+	public boolean verify(final CharSequence password, final String digest) {
+		final PasswordHasher hasher = this.find(digest);
+		return hasher != null && hasher.verify(password, digest);
+	}
+
+	public boolean needsRehash(final String digest) {
+		return (!(this.active.accepts(digest))) || this.active.needsRehash(digest);
+	}
+
+	public void close() {
+		this.active.close();
+		this.hashers.forEach(PasswordHasher::close);
+	}
+
+	private PasswordHasher find(final String digest) {
+		if(this.active.accepts(digest)) {
+			return this.active;
+		}
+		for(final PasswordHasher hasher : this.hashers) {
+			if(hasher.accepts(digest)) {
+				return hasher;
+			}
+		}
+		return null;
+	}
+
+}
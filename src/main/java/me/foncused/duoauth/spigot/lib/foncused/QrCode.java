@@ -0,0 +1,396 @@
+package me.foncused.duoauth.spigot.lib.foncused;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class QrCode {
+
+	// Error correction level M, indexed by version
+	private static final byte[] ECC_CODEWORDS = {
+			-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26,
+			26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28
+	};
+	private static final byte[] ECC_BLOCKS = {
+			-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16,
+			17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49
+	};
+	private static final int FORMAT_MASK = 0x5412;
+	// "DuoAuth" as version 1-M with mask 4, one row per entry with the leftmost module in the highest bit
+	private static final String TEST_TEXT = "DuoAuth";
+	private static final int[] TEST_ROWS = {
+			0x1FD27F, 0x104241, 0x17455D, 0x17555D, 0x17555D, 0x105E41, 0x1FD57F, 0x001B00, 0x1176F9, 0x021F0C, 0x135E72,
+			0x1E8CF0, 0x0AE5D1, 0x001DDB, 0x1FDD96, 0x104B33, 0x175E65, 0x174737, 0x174A50, 0x1040D0, 0x1FD5E9
+	};
+
+	private final int version;
+	private final int size;
+	private final boolean[][] modules;
+	private final boolean[][] functions;
+
+	private QrCode(final int version, final byte[] codewords) {
+		this.version = version;
+		this.size = version * 4 + 17;
+		this.modules = new boolean[this.size][this.size];
+		this.functions = new boolean[this.size][this.size];
+		this.drawFunctionPatterns();
+		this.drawCodewords(this.addEccAndInterleave(codewords));
+		int best = 0;
+		int penalty = Integer.MAX_VALUE;
+		for(int mask = 0; mask < 8; mask++) {
+			this.applyMask(mask);
+			this.drawFormatBits(mask);
+			final int p = this.getPenalty();
+			if(p < penalty) {
+				best = mask;
+				penalty = p;
+			}
+			// Masking is an xor, so applying it again undoes it
+			this.applyMask(mask);
+		}
+		this.applyMask(best);
+		this.drawFormatBits(best);
+	}
+
+	public static boolean selfTest() {
+		final boolean[][] modules = encode(TEST_TEXT);
+		if(modules.length != TEST_ROWS.length) {
+			return false;
+		}
+		for(int y = 0; y < modules.length; y++) {
+			int row = 0;
+			for(final boolean module : modules[y]) {
+				row = (row << 1) | (module ? 1 : 0);
+			}
+			if(row != TEST_ROWS[y]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Encodes the text in byte mode and returns the module matrix indexed by row then column, true being dark
+	public static boolean[][] encode(final String text) {
+		final byte[] data = text.getBytes(StandardCharsets.UTF_8);
+		for(int version = 1; version <= 40; version++) {
+			final int capacity = getDataCodewords(version);
+			final int countBits = version <= 9 ? 8 : 16;
+			if(4 + countBits + data.length * 8 > capacity * 8) {
+				continue;
+			}
+			final byte[] codewords = new byte[capacity];
+			int bit = 0;
+			bit = append(codewords, bit, 0x4, 4);
+			bit = append(codewords, bit, data.length, countBits);
+			for(final byte b : data) {
+				bit = append(codewords, bit, b & 0xFF, 8);
+			}
+			// The terminator and the padding up to a byte boundary are already zero
+			bit = Math.min(bit + 4, capacity * 8);
+			for(int i = (bit + 7) >>> 3, pad = 0xEC; i < capacity; i++, pad ^= 0xEC ^ 0x11) {
+				codewords[i] = (byte) pad;
+			}
+			return new QrCode(version, codewords).modules;
+		}
+		throw new IllegalArgumentException("Text is too long to encode");
+	}
+
+	private static int append(final byte[] codewords, int bit, final int value, final int length) {
+		for(int i = length - 1; i >= 0; i--, bit++) {
+			codewords[bit >>> 3] |= ((value >>> i) & 1) << (7 - (bit & 7));
+		}
+		return bit;
+	}
+
+	private static int getRawDataModules(final int version) {
+		int modules = (16 * version + 128) * version + 64;
+		if(version >= 2) {
+			final int align = version / 7 + 2;
+			modules -= (25 * align - 10) * align - 55;
+			if(version >= 7) {
+				modules -= 36;
+			}
+		}
+		return modules;
+	}
+
+	private static int getDataCodewords(final int version) {
+		return getRawDataModules(version) / 8 - ECC_CODEWORDS[version] * ECC_BLOCKS[version];
+	}
+
+	private int[] getAlignmentPositions() {
+		if(this.version == 1) {
+			return new int[0];
+		}
+		final int align = this.version / 7 + 2;
+		final int step = (this.version * 8 + align * 3 + 5) / (align * 4 - 4) * 2;
+		final int[] positions = new int[align];
+		positions[0] = 6;
+		for(int i = align - 1, position = this.size - 7; i >= 1; i--, position -= step) {
+			positions[i] = position;
+		}
+		return positions;
+	}
+
+	private void setFunction(final int x, final int y, final boolean dark) {
+		this.modules[y][x] = dark;
+		this.functions[y][x] = true;
+	}
+
+	private void drawFunctionPatterns() {
+		for(int i = 0; i < this.size; i++) {
+			this.setFunction(6, i, i % 2 == 0);
+			this.setFunction(i, 6, i % 2 == 0);
+		}
+		this.drawFinder(3, 3);
+		this.drawFinder(this.size - 4, 3);
+		this.drawFinder(3, this.size - 4);
+		final int[] positions = this.getAlignmentPositions();
+		final int last = positions.length - 1;
+		for(int i = 0; i <= last; i++) {
+			for(int j = 0; j <= last; j++) {
+				// Alignment patterns are skipped where they would overlap the finders
+				if(!((i == 0 && j == 0) || (i == 0 && j == last) || (i == last && j == 0))) {
+					this.drawAlignment(positions[i], positions[j]);
+				}
+			}
+		}
+		// Reserves the format areas until the mask is known
+		this.drawFormatBits(0);
+		this.drawVersion();
+	}
+
+	private void drawFinder(final int x, final int y) {
+		for(int dy = -4; dy <= 4; dy++) {
+			for(int dx = -4; dx <= 4; dx++) {
+				final int xx = x + dx;
+				final int yy = y + dy;
+				if(xx >= 0 && xx < this.size && yy >= 0 && yy < this.size) {
+					final int distance = Math.max(Math.abs(dx), Math.abs(dy));
+					this.setFunction(xx, yy, distance != 2 && distance != 4);
+				}
+			}
+		}
+	}
+
+	private void drawAlignment(final int x, final int y) {
+		for(int dy = -2; dy <= 2; dy++) {
+			for(int dx = -2; dx <= 2; dx++) {
+				this.setFunction(x + dx, y + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+			}
+		}
+	}
+
+	private void drawFormatBits(final int mask) {
+		// Level M is encoded as 00, followed by the mask and a BCH(15, 5) remainder
+		final int data = mask;
+		int remainder = data;
+		for(int i = 0; i < 10; i++) {
+			remainder = (remainder << 1) ^ ((remainder >>> 9) * 0x537);
+		}
+		final int bits = ((data << 10) | remainder) ^ FORMAT_MASK;
+		for(int i = 0; i <= 5; i++) {
+			this.setFunction(8, i, bit(bits, i));
+		}
+		this.setFunction(8, 7, bit(bits, 6));
+		this.setFunction(8, 8, bit(bits, 7));
+		this.setFunction(7, 8, bit(bits, 8));
+		for(int i = 9; i < 15; i++) {
+			this.setFunction(14 - i, 8, bit(bits, i));
+		}
+		for(int i = 0; i < 8; i++) {
+			this.setFunction(this.size - 1 - i, 8, bit(bits, i));
+		}
+		for(int i = 8; i < 15; i++) {
+			this.setFunction(8, this.size - 15 + i, bit(bits, i));
+		}
+		this.setFunction(8, this.size - 8, true);
+	}
+
+	private void drawVersion() {
+		if(this.version < 7) {
+			return;
+		}
+		int remainder = this.version;
+		for(int i = 0; i < 12; i++) {
+			remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1F25);
+		}
+		final int bits = (this.version << 12) | remainder;
+		for(int i = 0; i < 18; i++) {
+			final boolean dark = bit(bits, i);
+			final int a = this.size - 11 + i % 3;
+			final int b = i / 3;
+			this.setFunction(a, b, dark);
+			this.setFunction(b, a, dark);
+		}
+	}
+
+	private byte[] addEccAndInterleave(final byte[] data) {
+		final int blocks = ECC_BLOCKS[this.version];
+		final int eccLength = ECC_CODEWORDS[this.version];
+		final int raw = getRawDataModules(this.version) / 8;
+		final int shortBlocks = blocks - raw % blocks;
+		final int shortLength = raw / blocks;
+		final byte[] divisor = getDivisor(eccLength);
+		final byte[][] split = new byte[blocks][];
+		for(int i = 0, k = 0; i < blocks; i++) {
+			final byte[] block = Arrays.copyOfRange(data, k, k + shortLength - eccLength + (i < shortBlocks ? 0 : 1));
+			k += block.length;
+			final byte[] padded = Arrays.copyOf(block, shortLength + 1);
+			System.arraycopy(getRemainder(block, divisor), 0, padded, padded.length - eccLength, eccLength);
+			split[i] = padded;
+		}
+		// Short blocks carry a placeholder at the end of their data, which is skipped while interleaving
+		final byte[] result = new byte[raw];
+		for(int i = 0, k = 0; i < split[0].length; i++) {
+			for(int j = 0; j < blocks; j++) {
+				if(i != shortLength - eccLength || j >= shortBlocks) {
+					result[k++] = split[j][i];
+				}
+			}
+		}
+		return result;
+	}
+
+	private static byte[] getDivisor(final int degree) {
+		final byte[] divisor = new byte[degree];
+		divisor[degree - 1] = 1;
+		int root = 1;
+		for(int i = 0; i < degree; i++) {
+			for(int j = 0; j < degree; j++) {
+				divisor[j] = (byte) multiply(divisor[j] & 0xFF, root);
+				if(j + 1 < degree) {
+					divisor[j] ^= divisor[j + 1];
+				}
+			}
+			root = multiply(root, 0x02);
+		}
+		return divisor;
+	}
+
+	private static byte[] getRemainder(final byte[] data, final byte[] divisor) {
+		final byte[] remainder = new byte[divisor.length];
+		for(final byte b : data) {
+			final int factor = (b ^ remainder[0]) & 0xFF;
+			System.arraycopy(remainder, 1, remainder, 0, remainder.length - 1);
+			remainder[remainder.length - 1] = 0;
+			for(int i = 0; i < remainder.length; i++) {
+				remainder[i] ^= multiply(divisor[i] & 0xFF, factor);
+			}
+		}
+		return remainder;
+	}
+
+	// Multiplication in GF(2^8) modulo x^8 + x^4 + x^3 + x^2 + 1
+	private static int multiply(final int x, final int y) {
+		int z = 0;
+		for(int i = 7; i >= 0; i--) {
+			z = (z << 1) ^ ((z >>> 7) * 0x11D);
+			z ^= ((y >>> i) & 1) * x;
+		}
+		return z;
+	}
+
+	private void drawCodewords(final byte[] data) {
+		int i = 0;
+		// Codewords are placed in two-module columns, zigzagging up and down from the right edge
+		for(int right = this.size - 1; right >= 1; right -= 2) {
+			if(right == 6) {
+				right = 5;
+			}
+			final boolean upward = ((right + 1) & 2) == 0;
+			for(int vertical = 0; vertical < this.size; vertical++) {
+				final int y = upward ? this.size - 1 - vertical : vertical;
+				for(int j = 0; j < 2; j++) {
+					final int x = right - j;
+					if(!(this.functions[y][x]) && i < data.length * 8) {
+						this.modules[y][x] = bit(data[i >>> 3], 7 - (i & 7));
+						i++;
+					}
+				}
+			}
+		}
+	}
+
+	private void applyMask(final int mask) {
+		for(int y = 0; y < this.size; y++) {
+			for(int x = 0; x < this.size; x++) {
+				this.modules[y][x] ^= isMasked(mask, x, y) && !(this.functions[y][x]);
+			}
+		}
+	}
+
+	private static boolean isMasked(final int mask, final int x, final int y) {
+		switch(mask) {
+			case 0:
+				return (x + y) % 2 == 0;
+			case 1:
+				return y % 2 == 0;
+			case 2:
+				return x % 3 == 0;
+			case 3:
+				return (x + y) % 3 == 0;
+			case 4:
+				return (x / 3 + y / 2) % 2 == 0;
+			case 5:
+				return x * y % 2 + x * y % 3 == 0;
+			case 6:
+				return (x * y % 2 + x * y % 3) % 2 == 0;
+			default:
+				return ((x + y) % 2 + x * y % 3) % 2 == 0;
+		}
+	}
+
+	private int getPenalty() {
+		int penalty = 0;
+		int dark = 0;
+		for(int i = 0; i < this.size; i++) {
+			penalty += this.getLinePenalty(i, true) + this.getLinePenalty(i, false);
+			for(int j = 0; j < this.size; j++) {
+				if(this.modules[i][j]) {
+					dark++;
+				}
+				if(i + 1 < this.size && j + 1 < this.size) {
+					final boolean color = this.modules[i][j];
+					if(color == this.modules[i][j + 1] && color == this.modules[i + 1][j] && color == this.modules[i + 1][j + 1]) {
+						penalty += 3;
+					}
+				}
+			}
+		}
+		final int total = this.size * this.size;
+		penalty += ((Math.abs(dark * 20 - total * 10) + total - 1) / total - 1) * 10;
+		return penalty;
+	}
+
+	private int getLinePenalty(final int line, final boolean row) {
+		int penalty = 0;
+		int run = 0;
+		int pattern = 0;
+		boolean previous = false;
+		for(int i = 0; i < this.size; i++) {
+			final boolean color = row ? this.modules[line][i] : this.modules[i][line];
+			if(i > 0 && color == previous) {
+				run++;
+				if(run == 5) {
+					penalty += 3;
+				} else if(run > 5) {
+					penalty++;
+				}
+			} else {
+				run = 1;
+			}
+			previous = color;
+			// The last eleven modules against the finder-like 1:1:3:1:1 pattern with four light modules on either side
+			pattern = ((pattern << 1) | (color ? 1 : 0)) & 0x7FF;
+			if(i >= 10 && (pattern == 0x5D0 || pattern == 0x05D)) {
+				penalty += 40;
+			}
+		}
+		return penalty;
+	}
+
+	private static boolean bit(final int value, final int i) {
+		return ((value >>> i) & 1) != 0;
+	}
+
+}
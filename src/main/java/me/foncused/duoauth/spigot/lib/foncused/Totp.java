@@ -0,0 +1,129 @@
+package me.foncused.duoauth.spigot.lib.foncused;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+
+public class Totp {
+
+	private static final String ALGORITHM = "HmacSHA1";
+	private static final long STEP = 30000;
+	private static final int MODULUS = 1000000;
+	private static final ThreadLocal<Engine> ENGINE = ThreadLocal.withInitial(Engine::new);
+	// RFC 6238 Appendix B, SHA1 with the ASCII secret "12345678901234567890", truncated to 6 digits
+	private static final String TEST_SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+	private static final long[] TEST_TIMES = {59L, 1111111109L, 1111111111L, 1234567890L, 2000000000L, 20000000000L};
+	private static final int[] TEST_CODES = {287082, 81804, 50471, 5924, 279037, 353130};
+
+	// RFC 4648 Base32, case-insensitive, ignoring padding, spaces and dashes
+	public static Key decode(final String secret) throws IllegalArgumentException {
+		final byte[] bytes = new byte[secret.length() * 5 / 8];
+		int buffer = 0, bits = 0, len = 0;
+		for(int i = 0; i < secret.length(); i++) {
+			final char c = secret.charAt(i);
+			final int value;
+			if(c >= 'A' && c <= 'Z') {
+				value = c - 'A';
+			} else if(c >= 'a' && c <= 'z') {
+				value = c - 'a';
+			} else if(c >= '2' && c <= '7') {
+				value = c - '2' + 26;
+			} else if(c == '=' || c == ' ' || c == '-') {
+				continue;
+			} else {
+				throw new IllegalArgumentException("Invalid Base32 character");
+			}
+			buffer = (buffer << 5) | value;
+			bits += 5;
+			if(bits >= 8) {
+				bits -= 8;
+				bytes[len++] = (byte) (buffer >> bits);
+			}
+		}
+		if(len == 0) {
+			throw new IllegalArgumentException("Empty secret");
+		}
+		return new SecretKeySpec(bytes, 0, len, ALGORITHM);
+	}
+
+	public static boolean verify(final Key key, final int code, final long time, final int window) {
+		if(code < 0 || code >= MODULUS) {
+			return false;
+		}
+		final Engine engine = ENGINE.get();
+		final long counter = Math.floorDiv(time, STEP);
+		try {
+			engine.mac.init(key);
+			// Every step in the window is checked so the time taken does not reveal which one matched
+			boolean matched = false;
+			for(long i = -window; i <= window; i++) {
+				matched |= engine.generate(counter + i) == code;
+			}
+			return matched;
+		} catch(final InvalidKeyException | ShortBufferException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	public static int generate(final Key key, final long counter) throws InvalidKeyException, ShortBufferException {
+		final Engine engine = ENGINE.get();
+		engine.mac.init(key);
+		return engine.generate(counter);
+	}
+
+	public static boolean selfTest() {
+		try {
+			final Key key = decode(TEST_SECRET);
+			for(int i = 0; i < TEST_TIMES.length; i++) {
+				final long time = TEST_TIMES[i] * 1000L;
+				if(generate(key, Math.floorDiv(time, STEP)) != TEST_CODES[i]
+						|| (!(verify(key, TEST_CODES[i], time, 0)))
+						|| verify(key, (TEST_CODES[i] + 1) % MODULUS, time, 0)) {
+					return false;
+				}
+			}
+			return true;
+		} catch(final IllegalArgumentException | InvalidKeyException | ShortBufferException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	private static class Engine {
+
+		private final Mac mac;
+		private final byte[] message;
+		private final byte[] hash;
+
+		private Engine() {
+			try {
+				this.mac = Mac.getInstance(ALGORITHM);
+			} catch(final NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			this.message = new byte[8];
+			this.hash = new byte[this.mac.getMacLength()];
+		}
+
+		private int generate(long counter) throws ShortBufferException {
+			for(int i = 7; i >= 0; i--) {
+				this.message[i] = (byte) counter;
+				counter >>>= 8;
+			}
+			this.mac.update(this.message);
+			this.mac.doFinal(this.hash, 0);
+			final int offset = this.hash[this.hash.length - 1] & 0xf;
+			final int binary = ((this.hash[offset] & 0x7f) << 24)
+					| ((this.hash[offset + 1] & 0xff) << 16)
+					| ((this.hash[offset + 2] & 0xff) << 8)
+					| (this.hash[offset + 3] & 0xff);
+			return binary % MODULUS;
+		}
+
+	}
+
+}
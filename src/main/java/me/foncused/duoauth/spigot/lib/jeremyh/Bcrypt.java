@@ -1,6 +1,7 @@
 package me.foncused.duoauth.spigot.lib.jeremyh;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.security.SecureRandom;
 
 /*
@@ -315,176 +316,189 @@ public class Bcrypt {
 			41, 42, 43, 44, 45, 46, 47, 48, 49, 50,
 			51, 52, 53, -1, -1, -1, -1, -1
 	};
-	private int[] P;
-	private int[] S;
+	private static final int BCRYPT_HASH_LEN = BCRYPT_CIPHERTEXT.length * 4 - 1;
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final ThreadLocal<Bcrypt> ENGINE = ThreadLocal.withInitial(Bcrypt::new);
+	private final int[] P = new int[P_ORIG.length];
+	private final int[] S = new int[S_ORIG.length];
+	private final int[] cdata = new int[BCRYPT_CIPHERTEXT.length];
+	private final int[] lr = new int[2];
+	private final byte[] salt = new byte[BCRYPT_SALT_LEN];
+	private final byte[] raw = new byte[BCRYPT_CIPHERTEXT.length * 4];
+	private byte[] passwordb = new byte[128];
+	private int offset;
 
-	private static String encodebase64(final byte[] d, final int len) throws IllegalArgumentException {
+	private static int encodebase64(final byte[] d, final int len, final byte[] rs, int roff) throws IllegalArgumentException {
 		if(len <= 0 || len > d.length) {
 			throw new IllegalArgumentException("Invalid len");
 		}
 		int c1, c2, off = 0;
-		final StringBuilder rs = new StringBuilder();
 		while(off < len) {
 			c1 = d[off++] & 0xff;
-			rs.append(BASE64_CODE[(c1 >> 2) & 0x3f]);
+			rs[roff++] = (byte) BASE64_CODE[(c1 >> 2) & 0x3f];
 			c1 = (c1 & 0x03) << 4;
 			if(off >= len) {
-				rs.append(BASE64_CODE[c1 & 0x3f]);
+				rs[roff++] = (byte) BASE64_CODE[c1 & 0x3f];
 				break;
 			}
 			c2 = d[off++] & 0xff;
 			c1 |= (c2 >> 4) & 0x0f;
-			rs.append(BASE64_CODE[c1 & 0x3f]);
+			rs[roff++] = (byte) BASE64_CODE[c1 & 0x3f];
 			c1 = (c2 & 0x0f) << 2;
 			if(off >= len) {
-				rs.append(BASE64_CODE[c1 & 0x3f]);
+				rs[roff++] = (byte) BASE64_CODE[c1 & 0x3f];
 				break;
 			}
 			c2 = d[off++] & 0xff;
 			c1 |= (c2 >> 6) & 0x03;
-			rs.append(BASE64_CODE[c1 & 0x3f]);
-			rs.append(BASE64_CODE[c2 & 0x3f]);
+			rs[roff++] = (byte) BASE64_CODE[c1 & 0x3f];
+			rs[roff++] = (byte) BASE64_CODE[c2 & 0x3f];
 		}
-		return rs.toString();
+		return roff;
 	}
 
-	private static byte char64(final char x) {
-		if((int) x < 0 || (int) x > INDEX64.length) {
+	private static int encodedLength(final int len) {
+		return (len * 4 + 2) / 3;
+	}
+
+	private static byte char64(final byte x) {
+		final int i = x & 0xff;
+		if(i >= INDEX64.length) {
 			return -1;
 		}
-		return INDEX64[(int) x];
+		return INDEX64[i];
 	}
 
-	private static byte[] decodebase64(final String s, final int maxolen) throws IllegalArgumentException {
-		if(maxolen <= 0) {
-			throw new IllegalArgumentException("Invalid maxolen");
-		}
-		int off = 0, slen = s.length(), olen = 0;
+	private static int decodebase64(final byte[] s, int off, final byte[] ret) throws IllegalArgumentException {
+		final int slen = s.length, maxolen = ret.length;
+		int olen = 0;
 		byte c1, c2, c3, c4, o;
-		final StringBuilder rs = new StringBuilder();
 		while(off < slen - 1 && olen < maxolen) {
-			c1 = char64(s.charAt(off++));
-			c2 = char64(s.charAt(off++));
+			c1 = char64(s[off++]);
+			c2 = char64(s[off++]);
 			if(c1 == -1 || c2 == -1) {
 				break;
 			}
 			o = (byte) (c1 << 2);
 			o |= (c2 & 0x30) >> 4;
-			rs.append((char) o);
+			ret[olen] = o;
 			if(++olen >= maxolen || off >= slen) {
 				break;
 			}
-			c3 = char64(s.charAt(off++));
+			c3 = char64(s[off++]);
 			if(c3 == -1) {
 				break;
 			}
 			o = (byte) ((c2 & 0x0f) << 4);
 			o |= (c3 & 0x3c) >> 2;
-			rs.append((char) o);
+			ret[olen] = o;
 			if(++olen >= maxolen || off >= slen) {
 				break;
 			}
-			c4 = char64(s.charAt(off++));
+			c4 = char64(s[off++]);
 			o = (byte) ((c3 & 0x03) << 6);
 			o |= c4;
-			rs.append((char) o);
+			ret[olen] = o;
 			++olen;
 		}
-		final byte[] ret = new byte[olen];
-		for(off = 0; off < olen; off++) {
-			ret[off] = (byte) rs.charAt(off);
-		}
-		return ret;
+		return olen;
 	}
 
 	private void encipher(final int[] lr, final int off) {
+		final int[] P = this.P, S = this.S;
 		int n, l = lr[off], r = lr[off + 1];
-		l ^= this.P[0];
+		l ^= P[0];
 		for(int i = 0; i <= BLOWFISH_NUM_ROUNDS - 2;) {
-			n = this.S[(l >> 24) & 0xff];
-			n += this.S[0x100 | ((l >> 16) & 0xff)];
-			n ^= this.S[0x200 | ((l >> 8) & 0xff)];
-			n += this.S[0x300 | (l & 0xff)];
-			r ^= n ^ this.P[++i];
-			n = this.S[(r >> 24) & 0xff];
-			n += this.S[0x100 | ((r >> 16) & 0xff)];
-			n ^= this.S[0x200 | ((r >> 8) & 0xff)];
-			n += this.S[0x300 | (r & 0xff)];
-			l ^= n ^ this.P[++i];
+			n = S[(l >> 24) & 0xff];
+			n += S[0x100 | ((l >> 16) & 0xff)];
+			n ^= S[0x200 | ((l >> 8) & 0xff)];
+			n += S[0x300 | (l & 0xff)];
+			r ^= n ^ P[++i];
+			n = S[(r >> 24) & 0xff];
+			n += S[0x100 | ((r >> 16) & 0xff)];
+			n ^= S[0x200 | ((r >> 8) & 0xff)];
+			n += S[0x300 | (r & 0xff)];
+			l ^= n ^ P[++i];
 		}
-		lr[off] = r ^ this.P[BLOWFISH_NUM_ROUNDS + 1];
+		lr[off] = r ^ P[BLOWFISH_NUM_ROUNDS + 1];
 		lr[off + 1] = l;
 	}
 
-	private static int streamtoword(final byte[] data, final int[] offp) {
-		int word = 0, off = offp[0];
+	private int streamtoword(final byte[] data, final int len) {
+		int word = 0, off = this.offset;
 		for(int i = 0; i < 4; i++) {
 			word = (word << 8) | (data[off] & 0xff);
-			off = (off + 1) % data.length;
+			off = (off + 1) % len;
 		}
-		offp[0] = off;
+		this.offset = off;
 		return word;
 	}
 
 	private void initkey() {
-		this.P = P_ORIG.clone();
-		this.S = S_ORIG.clone();
+		System.arraycopy(P_ORIG, 0, this.P, 0, P_ORIG.length);
+		System.arraycopy(S_ORIG, 0, this.S, 0, S_ORIG.length);
 	}
 
-	private void key(final byte[] key) {
-		final int plen = this.P.length, slen = this.S.length;
+	private void key(final byte[] key, final int klen) {
+		final int[] P = this.P, S = this.S, lr = this.lr;
+		final int plen = P.length, slen = S.length;
+		// Stored digests were made with the key stream restarting for every P entry, so each entry takes the first word
+		this.offset = 0;
+		final int word = this.streamtoword(key, klen);
 		for(int i = 0; i < plen; i++) {
-			final int[] koffp = { 0 };
-			this.P[i] = this.P[i] ^ streamtoword(key, koffp);
+			P[i] ^= word;
 		}
-		final int[] lr = { 0, 0 };
+		lr[0] = 0;
+		lr[1] = 0;
 		for(int i = 0; i < plen; i += 2) {
 			this.encipher(lr, 0);
-			this.P[i] = lr[0];
-			this.P[i + 1] = lr[1];
+			P[i] = lr[0];
+			P[i + 1] = lr[1];
 		}
 		for(int i = 0; i < slen; i += 2) {
 			this.encipher(lr, 0);
-			this.S[i] = lr[0];
-			this.S[i + 1] = lr[1];
+			S[i] = lr[0];
+			S[i + 1] = lr[1];
 		}
 	}
 
-	private void ekskey(final byte[] data, final byte[] key) {
-		final int[] koffp = { 0 }, doffp = { 0 };
-		final int[] lr = { 0, 0 };
-		final int plen = this.P.length, slen = this.S.length;
+	private void ekskey(final byte[] data, final byte[] key, final int klen) {
+		final int[] P = this.P, S = this.S, lr = this.lr;
+		final int plen = P.length, slen = S.length;
+		this.offset = 0;
 		for(int i = 0; i < plen; i++) {
-			this.P[i] = this.P[i] ^ streamtoword(key, koffp);
+			P[i] ^= this.streamtoword(key, klen);
 		}
+		this.offset = 0;
+		lr[0] = 0;
+		lr[1] = 0;
 		for(int i = 0; i < plen; i += 2) {
-			lr[0] ^= streamtoword(data, doffp);
-			lr[1] ^= streamtoword(data, doffp);
+			lr[0] ^= this.streamtoword(data, data.length);
+			lr[1] ^= this.streamtoword(data, data.length);
 			this.encipher(lr, 0);
-			this.P[i] = lr[0];
-			this.P[i + 1] = lr[1];
+			P[i] = lr[0];
+			P[i + 1] = lr[1];
 		}
 		for(int i = 0; i < slen; i += 2) {
-			lr[0] ^= streamtoword(data, doffp);
-			lr[1] ^= streamtoword(data, doffp);
+			lr[0] ^= this.streamtoword(data, data.length);
+			lr[1] ^= this.streamtoword(data, data.length);
 			this.encipher(lr, 0);
-			this.S[i] = lr[0];
-			this.S[i + 1] = lr[1];
+			S[i] = lr[0];
+			S[i + 1] = lr[1];
 		}
 	}
 
-	private byte[] cryptraw(final byte[] password, final byte[] salt, final int rounds, final int[] cdata) {
+	private byte[] cryptraw(final byte[] password, final int plen, final byte[] salt, final int rounds) {
 		if(rounds < 4 || rounds > 30) {
 			throw new IllegalArgumentException("Bad number of rounds");
 		}
-		if(salt.length != BCRYPT_SALT_LEN) {
-			throw new IllegalArgumentException("Bad salt length");
-		}
+		final int[] cdata = this.cdata;
+		System.arraycopy(BCRYPT_CIPHERTEXT, 0, cdata, 0, cdata.length);
 		this.initkey();
-		this.ekskey(salt, password);
+		this.ekskey(salt, password, plen);
 		for(int i = 0; i != (1 << rounds); i++) {
-			this.key(password);
-			this.key(salt);
+			this.key(password, plen);
+			this.key(salt, salt.length);
 		}
 		final int clen = cdata.length;
 		for(int i = 0; i < 64; i++) {
@@ -492,7 +506,7 @@ public class Bcrypt {
 				this.encipher(cdata, j << 1);
 			}
 		}
-		byte[] ret = new byte[clen * 4];
+		final byte[] ret = this.raw;
 		for(int i = 0, j = 0; i < clen; i++) {
 			ret[j++] = (byte) ((cdata[i] >> 24) & 0xff);
 			ret[j++] = (byte) ((cdata[i] >> 16) & 0xff);
@@ -502,93 +516,106 @@ public class Bcrypt {
 		return ret;
 	}
 
-	public static String hashpw(final String password, final String salt) {
-		if(salt.charAt(0) != '$' || salt.charAt(1) != '2') {
+	private byte[] crypt(final byte[] password, final byte[] salt) {
+		if(salt.length < 4 || salt[0] != '$' || salt[1] != '2') {
 			throw new IllegalArgumentException("Invalid salt version");
 		}
-		int off;
-		char minor = (char) 0;
-		if(salt.charAt(2) == '$') {
+		final int off;
+		byte minor = 0;
+		if(salt[2] == '$') {
 			off = 3;
 		} else {
-			minor = salt.charAt(2);
-			if(minor != 'a' || salt.charAt(3) != '$') {
+			minor = salt[2];
+			if(minor != 'a' || salt[3] != '$') {
 				throw new IllegalArgumentException("Invalid salt revision");
 			}
 			off = 4;
 		}
-		if(salt.charAt(off + 2) > '$') {
+		if(salt.length < off + 3 || salt[off + 2] > '$') {
 			throw new IllegalArgumentException("Missing salt rounds");
 		}
-		byte[] passwordb;
-		try {
-			passwordb = (password + (minor >= 'a' ? "\000" : "")).getBytes("UTF-8");
-		} catch(final UnsupportedEncodingException uee) {
-			throw new AssertionError("UTF-8 is not supported");
+		final int d1 = salt[off] - '0', d2 = salt[off + 1] - '0';
+		if(d1 < 0 || d1 > 9 || d2 < 0 || d2 > 9) {
+			throw new NumberFormatException("Invalid salt rounds");
+		}
+		final int rounds = d1 * 10 + d2;
+		if(rounds > 30) {
+			throw new IllegalArgumentException("Rounds exceeds maximum (30)");
 		}
-		final StringBuilder rs = new StringBuilder().append("$2");
-		if(minor >= 'a') {
-			rs.append(minor);
+		if(decodebase64(salt, off + 3, this.salt) != BCRYPT_SALT_LEN) {
+			throw new IllegalArgumentException("Bad salt length");
 		}
-		rs.append("$");
-		final int rounds = Integer.parseInt(salt.substring(off, off + 2));
-		if(rounds < 10) {
-			rs.append("0");
+		final int plen = password.length + (minor >= 'a' ? 1 : 0);
+		if(this.passwordb.length < plen) {
+			this.passwordb = new byte[plen];
 		}
-		final int max = 30;
-		if(rounds > max) {
-			throw new IllegalArgumentException("Rounds exceeds maximum (" + max + ")");
+		final byte[] passwordb = this.passwordb;
+		final byte[] hash;
+		try {
+			// The buffer is always wiped after use, so the terminator for $2a$ is already in place
+			System.arraycopy(password, 0, passwordb, 0, password.length);
+			hash = this.cryptraw(passwordb, plen, this.salt, rounds);
+		} finally {
+			Arrays.fill(passwordb, (byte) 0);
 		}
-		rs.append(rounds);
-		rs.append("$");
-		final byte[] saltb = decodebase64(salt.substring(off + 3, off + 25), BCRYPT_SALT_LEN);
-		rs.append(encodebase64(saltb, saltb.length));
-		rs.append(encodebase64(new Bcrypt().cryptraw(passwordb, saltb, rounds, BCRYPT_CIPHERTEXT.clone()), BCRYPT_CIPHERTEXT.length * 4 - 1));
-		return rs.toString();
+		final byte[] rs = new byte[off + 3 + encodedLength(BCRYPT_SALT_LEN) + encodedLength(BCRYPT_HASH_LEN)];
+		System.arraycopy(salt, 0, rs, 0, off);
+		rs[off] = (byte) ('0' + d1);
+		rs[off + 1] = (byte) ('0' + d2);
+		rs[off + 2] = '$';
+		final int hoff = encodebase64(this.salt, BCRYPT_SALT_LEN, rs, off + 3);
+		encodebase64(hash, BCRYPT_HASH_LEN, rs, hoff);
+		return rs;
+	}
+
+	public static byte[] hashpw(final byte[] password, final byte[] salt) {
+		return ENGINE.get().crypt(password, salt);
+	}
+
+	public static String hashpw(final String password, final String salt) {
+		return new String(hashpw(password.getBytes(StandardCharsets.UTF_8), salt.getBytes(StandardCharsets.UTF_8)), StandardCharsets.US_ASCII);
 	}
 
 	private static String gensalt(final int rounds, final SecureRandom random) {
-		final byte[] rnd = new byte[BCRYPT_SALT_LEN];
-		random.nextBytes(rnd);
-		final StringBuilder rs = new StringBuilder().append("$2a$");
-		if(rounds < 10) {
-			rs.append("0");
-		}
 		if(rounds > 30) {
 			throw new IllegalArgumentException("Rounds exceeds maximum (30)");
 		}
-		rs.append(rounds);
-		rs.append("$");
-		rs.append(encodebase64(rnd, rnd.length));
-		return rs.toString();
+		final byte[] rnd = new byte[BCRYPT_SALT_LEN];
+		random.nextBytes(rnd);
+		final byte[] rs = new byte[7 + encodedLength(BCRYPT_SALT_LEN)];
+		rs[0] = '$';
+		rs[1] = '2';
+		rs[2] = 'a';
+		rs[3] = '$';
+		rs[4] = (byte) ('0' + rounds / 10);
+		rs[5] = (byte) ('0' + rounds % 10);
+		rs[6] = '$';
+		encodebase64(rnd, rnd.length, rs, 7);
+		return new String(rs, StandardCharsets.US_ASCII);
 	}
 
 	public static String gensalt(final int log_rounds) {
-		return gensalt(log_rounds, new SecureRandom());
+		return gensalt(log_rounds, RANDOM);
 	}
 
 	public static String gensalt() {
 		return gensalt(GENSALT_DEFAULT_LOG2_ROUNDS);
 	}
 
-	public static boolean checkpw(final String plaintext, final String hashed) {
-		byte[] hashedBytes, tryBytes;
-		try {
-			final String try_pw = hashpw(plaintext, hashed);
-			final String charset = "UTF-8";
-			hashedBytes = hashed.getBytes(charset);
-			tryBytes = try_pw.getBytes(charset);
-		} catch(final UnsupportedEncodingException uee) {
-			return false;
-		}
-		if(hashedBytes.length != tryBytes.length) {
+	public static boolean checkpw(final byte[] plaintext, final byte[] hashed) {
+		final byte[] tryBytes = hashpw(plaintext, hashed);
+		if(hashed.length != tryBytes.length) {
 			return false;
 		}
 		byte ret = 0;
 		for(int i = 0; i < tryBytes.length; i++) {
-			ret |= hashedBytes[i] ^ tryBytes[i];
+			ret |= hashed[i] ^ tryBytes[i];
 		}
 		return ret == 0;
 	}
 
+	public static boolean checkpw(final String plaintext, final String hashed) {
+		return checkpw(plaintext.getBytes(StandardCharsets.UTF_8), hashed.getBytes(StandardCharsets.UTF_8));
+	}
+
 }
@@ -1,42 +1,84 @@
 package me.foncused.duoauth.spigot.lib.wstrange;
 
 import com.warrenstrange.googleauth.GoogleAuthenticator;
+import com.warrenstrange.googleauth.GoogleAuthenticatorConfig;
 import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
 import com.warrenstrange.googleauth.GoogleAuthenticatorQRGenerator;
+import me.foncused.duoauth.spigot.cache.CredentialStore;
+import me.foncused.duoauth.spigot.lib.foncused.Totp;
 
-import java.util.Map;
+import java.security.Key;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class GoogleAuth {
 
 	private final GoogleAuthenticator ga;
-	private final Map<UUID, GoogleAuthenticatorKey> creds;
+	private final CredentialStore creds;
+	private final SecretPool pool;
+	private final int window;
+	private final boolean verified;
 
-	public GoogleAuth() {
-		this.ga = new GoogleAuthenticator();
-		this.creds = new ConcurrentHashMap<>();
+	public GoogleAuth(final int window, final int pendingLimit, final int pendingTimeout, final int poolSize) {
+		// The library window is the total number of steps checked, so it covers the same steps as the in-house check
+		this.ga = new GoogleAuthenticator(
+				new GoogleAuthenticatorConfig.GoogleAuthenticatorConfigBuilder()
+						.setWindowSize(window * 2 + 1)
+						.build()
+		);
+		this.creds = new CredentialStore(pendingLimit, pendingTimeout);
+		this.pool = new SecretPool(this.ga, poolSize);
+		this.window = window;
+		// Codes are only checked in-house once the implementation reproduces the RFC 6238 vectors
+		this.verified = Totp.selfTest();
 	}
 
-	public synchronized GoogleAuthenticatorKey generateRfc6238Credentials(final UUID uuid) {
-		this.creds.put(uuid, this.ga.createCredentials());
-		return this.creds.get(uuid);
+	public GoogleAuthenticatorKey generateRfc6238Credentials(final UUID uuid) {
+		final GoogleAuthenticatorKey key = this.pool.poll();
+		return this.creds.put(uuid, key != null ? key : this.ga.createCredentials());
 	}
 
-	public synchronized GoogleAuthenticatorKey getCreds(final UUID uuid) {
+	public GoogleAuthenticatorKey getCreds(final UUID uuid) {
 		return this.creds.get(uuid);
 	}
 
-	public synchronized boolean containsCreds(final UUID uuid) {
-		return this.creds.containsKey(uuid);
+	public boolean containsCreds(final UUID uuid) {
+		return this.creds.contains(uuid);
 	}
 
-	public synchronized void removeCreds(final UUID uuid) {
+	public void removeCreds(final UUID uuid) {
 		this.creds.remove(uuid);
 	}
 
+	public CredentialStore getCredentialStore() {
+		return this.creds;
+	}
+
+	public SecretPool getSecretPool() {
+		return this.pool;
+	}
+
+	public void close() {
+		this.pool.stop();
+	}
+
 	public boolean authorize(final String secret, final int code) {
-		return this.ga.authorize(secret, code);
+		return this.authorize(secret, null, code);
+	}
+
+	// The key is the secret already decoded, or null to decode it here
+	public boolean authorize(final String secret, final Key key, final int code) {
+		if(!(this.verified)) {
+			return this.ga.authorize(secret, code);
+		}
+		try {
+			return Totp.verify(key != null ? key : Totp.decode(secret), code, System.currentTimeMillis(), this.window);
+		} catch(final IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	public boolean isVerified() {
+		return this.verified;
 	}
 
 	public String getAuthUrl(final String issuer, final String account, final GoogleAuthenticatorKey key) {
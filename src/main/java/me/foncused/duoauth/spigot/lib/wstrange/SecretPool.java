@@ -0,0 +1,59 @@
+package me.foncused.duoauth.spigot.lib.wstrange;
+
+import com.warrenstrange.googleauth.GoogleAuthenticator;
+import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SecretPool {
+
+	private final GoogleAuthenticator ga;
+	private final BlockingQueue<GoogleAuthenticatorKey> pool;
+	private final AtomicLong misses;
+	private final Thread thread;
+
+	public SecretPool(final GoogleAuthenticator ga, final int size) {
+		this.ga = ga;
+		this.pool = new ArrayBlockingQueue<>(size);
+		this.misses = new AtomicLong();
+		this.thread = new Thread(this::run, "DuoAuth Secrets");
+		this.thread.setDaemon(true);
+		this.thread.setPriority(Thread.MIN_PRIORITY);
+		this.thread.start();
+	}
+
+	private void run() {
+		try {
+			// put blocks while the pool is full, so each taken secret is replaced as soon as there is room
+			while(!(Thread.currentThread().isInterrupted())) {
+				this.pool.put(this.ga.createCredentials());
+			}
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public GoogleAuthenticatorKey poll() {
+		final GoogleAuthenticatorKey key = this.pool.poll();
+		if(key == null) {
+			this.misses.incrementAndGet();
+		}
+		return key;
+	}
+
+	public void stop() {
+		this.thread.interrupt();
+		this.pool.clear();
+	}
+
+	public int getSize() {
+		return this.pool.size();
+	}
+
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+}
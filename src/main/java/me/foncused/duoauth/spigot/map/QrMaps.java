@@ -0,0 +1,116 @@
+package me.foncused.duoauth.spigot.map;
+
+import me.foncused.duoauth.spigot.lib.foncused.QrCode;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.inventory.meta.MapMeta;
+import org.bukkit.map.MapRenderer;
+import org.bukkit.map.MapView;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+public class QrMaps {
+
+	private final boolean enabled;
+	private final Map<UUID, QrRenderer> renderers;
+	private final Map<UUID, MapView> views;
+	// Map IDs are never freed by the server, so views of players who left are handed to the next player instead
+	private final Deque<MapView> released;
+
+	public QrMaps() {
+		this.enabled = QrCode.selfTest();
+		this.renderers = new ConcurrentHashMap<>();
+		this.views = new ConcurrentHashMap<>();
+		this.released = new ConcurrentLinkedDeque<>();
+	}
+
+	// Must be called from the server thread
+	public ItemStack getMap(final Player player, final String secret, final String url) {
+		final UUID uuid = player.getUniqueId();
+		final MapView view = this.getView(player);
+		QrRenderer renderer = this.renderers.get(uuid);
+		if(renderer == null || !(renderer.getSecret().equals(secret))) {
+			this.evict(uuid);
+			renderer = new QrRenderer(uuid, secret, view, QrCode.encode(url));
+			view.addRenderer(renderer);
+			this.renderers.put(uuid, renderer);
+		}
+		final ItemStack item = new ItemStack(Material.FILLED_MAP);
+		final MapMeta meta = (MapMeta) item.getItemMeta();
+		meta.setMapView(view);
+		meta.setDisplayName("DuoAuth QR");
+		item.setItemMeta(meta);
+		return item;
+	}
+
+	private MapView getView(final Player player) {
+		MapView view = this.views.get(player.getUniqueId());
+		if(view != null) {
+			return view;
+		}
+		view = this.released.poll();
+		if(view == null) {
+			view = Bukkit.createMap(player.getWorld());
+			view.setScale(MapView.Scale.CLOSEST);
+		}
+		for(final MapRenderer r : new ArrayList<>(view.getRenderers())) {
+			view.removeRenderer(r);
+		}
+		this.views.put(player.getUniqueId(), view);
+		return view;
+	}
+
+	public boolean give(final Player player, final String secret, final String url) {
+		if(!(this.enabled)) {
+			return false;
+		}
+		final ItemStack item = this.getMap(player, secret, url);
+		// A map already holding this view redraws with the new renderer, so another copy is not needed
+		if(this.holds(player, this.views.get(player.getUniqueId()))) {
+			return true;
+		}
+		return player.getInventory().addItem(item).isEmpty();
+	}
+
+	private boolean holds(final Player player, final MapView view) {
+		for(final ItemStack item : player.getInventory().getContents()) {
+			if(item == null || item.getType() != Material.FILLED_MAP || !(item.hasItemMeta())) {
+				continue;
+			}
+			final ItemMeta meta = item.getItemMeta();
+			if(meta instanceof MapMeta && ((MapMeta) meta).hasMapView() && ((MapMeta) meta).getMapView().getId() == view.getId()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void evict(final UUID uuid) {
+		final QrRenderer renderer = this.renderers.remove(uuid);
+		if(renderer != null) {
+			renderer.getView().removeRenderer(renderer);
+		}
+	}
+
+	// Must be called from the server thread
+	public void release(final UUID uuid) {
+		this.evict(uuid);
+		final MapView view = this.views.remove(uuid);
+		if(view != null) {
+			this.released.offer(view);
+		}
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+}
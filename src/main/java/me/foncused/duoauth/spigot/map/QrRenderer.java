@@ -0,0 +1,76 @@
+package me.foncused.duoauth.spigot.map;
+
+import org.bukkit.entity.Player;
+import org.bukkit.map.MapCanvas;
+import org.bukkit.map.MapPalette;
+import org.bukkit.map.MapRenderer;
+import org.bukkit.map.MapView;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+public class QrRenderer extends MapRenderer {
+
+	private static final int MAP_SIZE = 128;
+	private static final int QUIET_ZONE = 4;
+
+	private final UUID owner;
+	private final String secret;
+	private final MapView view;
+	private final byte[] pixels;
+	private final Set<Player> drawn;
+
+	public QrRenderer(final UUID owner, final String secret, final MapView view, final boolean[][] modules) {
+		// Contextual rendering gives each player their own canvas, so only the owner ever sees the code
+		super(true);
+		this.owner = owner;
+		this.secret = secret;
+		this.view = view;
+		this.pixels = new byte[MAP_SIZE * MAP_SIZE];
+		// Canvases live as long as the player object, so each one is drawn once per login
+		this.drawn = Collections.newSetFromMap(new WeakHashMap<>());
+		Arrays.fill(this.pixels, MapPalette.WHITE);
+		final int size = modules.length;
+		final int scale = Math.max(1, MAP_SIZE / (size + QUIET_ZONE * 2));
+		final int offset = (MAP_SIZE - size * scale) / 2;
+		for(int y = 0; y < size; y++) {
+			for(int x = 0; x < size; x++) {
+				if(modules[y][x]) {
+					this.fill(offset + x * scale, offset + y * scale, scale);
+				}
+			}
+		}
+	}
+
+	private void fill(final int left, final int top, final int scale) {
+		for(int y = Math.max(0, top); y < Math.min(MAP_SIZE, top + scale); y++) {
+			for(int x = Math.max(0, left); x < Math.min(MAP_SIZE, left + scale); x++) {
+				this.pixels[y * MAP_SIZE + x] = MapPalette.DARK_GRAY;
+			}
+		}
+	}
+
+	@Override
+	public void render(final MapView view, final MapCanvas canvas, final Player player) {
+		if(!(player.getUniqueId().equals(this.owner)) || !(this.drawn.add(player))) {
+			return;
+		}
+		for(int y = 0; y < MAP_SIZE; y++) {
+			for(int x = 0; x < MAP_SIZE; x++) {
+				canvas.setPixel(x, y, this.pixels[y * MAP_SIZE + x]);
+			}
+		}
+	}
+
+	public String getSecret() {
+		return this.secret;
+	}
+
+	public MapView getView() {
+		return this.view;
+	}
+
+}
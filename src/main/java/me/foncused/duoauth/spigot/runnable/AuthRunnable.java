@@ -1,9 +1,11 @@
 package me.foncused.duoauth.spigot.runnable;
 
 import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.cache.CredentialStore;
 import me.foncused.duoauth.spigot.config.ConfigManager;
 import me.foncused.duoauth.spigot.config.LangManager;
 import me.foncused.duoauth.spigot.database.AuthDatabase;
+import me.foncused.duoauth.spigot.database.ExpiryIndex;
 import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
 import me.foncused.duoauth.spigot.lib.aikar.TaskChainManager;
 import me.foncused.duoauth.spigot.util.AuthUtil;
@@ -13,11 +15,6 @@ import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Set;
 import java.util.UUID;
 
 public class AuthRunnable {
@@ -26,46 +23,63 @@ public class AuthRunnable {
 	private final ConfigManager cm;
 	private final LangManager lm;
 	private final AuthDatabase db;
+	private final ExpiryIndex index;
 
 	public AuthRunnable(final DuoAuth plugin) {
 		this.plugin = plugin;
 		this.cm = this.plugin.getConfigManager();
 		this.lm = this.plugin.getLangManager();
 		this.db = this.plugin.getDatabase();
+		this.index = this.plugin.getExpiryIndex();
 	}
 
 	public void runTimeoutTask() {
 		new BukkitRunnable() {
 			@Override
 			public void run() {
-				final Set<UUID> uuids = db.readAll();
-				if(uuids != null && (!(uuids.isEmpty()))) {
-					uuids.forEach(uuid -> {
-						final String timestamp = db.readProperty(uuid, DatabaseProperty.TIMESTAMP).getAsString();
-						if(timestamp != null
-								&& getTimeDifference(timestamp, AuthUtil.getDateFormat()) >= (cm.getDeauthTimeout() / 24.0)
-								&& db.readProperty(uuid, DatabaseProperty.AUTHED).getAsBoolean()) {
-							final OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
-							final String name = player.getName();
-							db.writeProperty(uuid, DatabaseProperty.AUTHED, false);
-							TaskChainManager.newChain()
-									.sync(() -> {
-										final String notify = "Authentication for user " + uuid + " (" + name + ") has expired";
-										AuthUtil.console(notify);
-										if(cm.isDeauthTimeoutOnline() && plugin.containsPlayer(uuid) && player.isOnline()) {
-											plugin.getAuthCache(uuid).setAuthed(false);
-											final Player online = (Player) player;
-											if(cm.isBungee()) {
-												BungeeUtil.sendMessage(online, "Add");
-											}
-											AuthUtil.alertOne(online, lm.getSessionExpired());
-											AuthUtil.notify(notify);
-										}
-									})
-									.execute();
-						}
-					});
-				}
+				final long timeout = cm.getDeauthTimeout() * 3600000L;
+				index.getExpired(timeout).forEach(uuid -> {
+					// Storage may be shared with other servers, so confirm against the stored record first
+					if(index.refresh(uuid, db) && index.isExpired(uuid, timeout)) {
+						deauth(uuid);
+					}
+				});
+			}
+		}.runTaskTimerAsynchronously(this.plugin, 0, this.cm.getDeauthTimeoutCheckHeartbeat() * 60 * 20);
+	}
+
+	public void runIndexReloadTask() {
+		final long period = this.cm.getMysqlIndexReload() * 60 * 20L;
+		new BukkitRunnable() {
+			@Override
+			public void run() {
+				// Other servers sharing the database never touch this index, so their changes are picked up here
+				index.reload(db);
+			}
+		}.runTaskTimerAsynchronously(this.plugin, period, period);
+	}
+
+	public void runCredentialExpiryTask() {
+		final CredentialStore creds = this.plugin.getGoogleAuth().getCredentialStore();
+		new BukkitRunnable() {
+			@Override
+			public void run() {
+				creds.expire();
+			}
+		}.runTaskTimerAsynchronously(this.plugin, 20, 20);
+	}
+
+	public void runOnlineTimeoutTask() {
+		new BukkitRunnable() {
+			@Override
+			public void run() {
+				// Offline users are evaluated when they next connect, so only online users need checking here
+				final long timeout = cm.getDeauthTimeout() * 3600000L;
+				plugin.getPlayers().forEach(uuid -> {
+					if(index.refresh(uuid, db) && index.isExpired(uuid, timeout)) {
+						deauth(uuid);
+					}
+				});
 			}
 		}.runTaskTimerAsynchronously(this.plugin, 0, this.cm.getDeauthTimeoutCheckHeartbeat() * 60 * 20);
 	}
@@ -76,32 +90,44 @@ public class AuthRunnable {
 			new BukkitRunnable() {
 				@Override
 				public void run() {
-					final Set<UUID> uuids = db.readAll();
-					if(uuids != null && (!(uuids.isEmpty()))) {
-						uuids.forEach(uuid -> {
-							final String timestamp = db.readProperty(uuid, DatabaseProperty.TIMESTAMP).getAsString();
-							if(timestamp != null
-									&& getTimeDifference(timestamp, AuthUtil.getDateFormat()) >= (unlockTimeout / 24.0)
-									&& db.readProperty(uuid, DatabaseProperty.ATTEMPTS).getAsInt() >= cm.getCommandAttempts()) {
-								final OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
-								final String name = player.getName();
-								db.writeProperty(uuid, DatabaseProperty.ATTEMPTS, 0);
-								AuthUtil.notify("Authentication for user " + uuid + " (" + name + ") is now unlocked");
-							}
-						});
-					}
+					final int attempts = cm.getCommandAttempts();
+					final long timeout = unlockTimeout * 3600000L;
+					index.getUnlockable(attempts, timeout).forEach(uuid -> {
+						if(index.refresh(uuid, db) && index.isUnlockable(uuid, attempts, timeout)) {
+							unlock(uuid);
+						}
+					});
 				}
 			}.runTaskTimerAsynchronously(this.plugin, 0, this.cm.getUnlockTimeoutCheckHeartbeat() * 60 * 20);
 		}
 	}
 
-	private double getTimeDifference(final String date, final String format) {
-		final DateFormat formatter = new SimpleDateFormat(format);
-		try {
-			return ((formatter.parse(formatter.format(new Date())).getTime() - formatter.parse(date).getTime()) / 86400000.0);
-		} catch(final ParseException e) {
-			return 0;
-		}
+	public void deauth(final UUID uuid) {
+		final OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+		final String name = player.getName();
+		this.db.writeProperty(uuid, DatabaseProperty.AUTHED, false);
+		TaskChainManager.newChain()
+				.sync(() -> {
+					final String notify = "Authentication for user " + uuid + " (" + name + ") has expired";
+					AuthUtil.console(notify);
+					if(this.cm.isDeauthTimeoutOnline() && this.plugin.containsPlayer(uuid) && player.isOnline()) {
+						this.plugin.getAuthCache(uuid).setAuthed(false);
+						final Player online = (Player) player;
+						if(this.cm.isBungee()) {
+							BungeeUtil.sendMessage(online, "Add");
+						}
+						AuthUtil.alertOne(online, this.lm.getSessionExpired());
+						AuthUtil.notify(notify);
+					}
+				})
+				.execute();
+	}
+
+	public void unlock(final UUID uuid) {
+		final OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+		final String name = player.getName();
+		this.db.writeProperty(uuid, DatabaseProperty.ATTEMPTS, 0);
+		AuthUtil.notify("Authentication for user " + uuid + " (" + name + ") is now unlocked");
 	}
 
 }
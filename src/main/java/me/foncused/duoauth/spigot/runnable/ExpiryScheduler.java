@@ -0,0 +1,142 @@
+package me.foncused.duoauth.spigot.runnable;
+
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.config.ConfigManager;
+import me.foncused.duoauth.spigot.database.AuthDatabase;
+import me.foncused.duoauth.spigot.database.ExpiryIndex;
+import me.foncused.duoauth.spigot.database.ExpiryListener;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+public class ExpiryScheduler implements ExpiryListener {
+
+	private final AuthRunnable ar;
+	private final AuthDatabase db;
+	private final ExpiryIndex index;
+	private final long deauthTimeout;
+	private final long unlockTimeout;
+	private final int commandAttempts;
+	private final DelayQueue<Deadline> queue;
+	private final Map<UUID, Long> deauths;
+	private final Map<UUID, Long> unlocks;
+	private Thread thread;
+
+	public ExpiryScheduler(final DuoAuth plugin, final AuthRunnable ar) {
+		final ConfigManager cm = plugin.getConfigManager();
+		this.ar = ar;
+		this.db = plugin.getDatabase();
+		this.index = plugin.getExpiryIndex();
+		this.deauthTimeout = cm.getDeauthTimeout() * 3600000L;
+		this.unlockTimeout = cm.getUnlockTimeout() * 3600000L;
+		this.commandAttempts = cm.getCommandAttempts();
+		this.queue = new DelayQueue<>();
+		this.deauths = new ConcurrentHashMap<>();
+		this.unlocks = new ConcurrentHashMap<>();
+	}
+
+	public void start() {
+		this.thread = new Thread(this::run, "DuoAuth Expiry");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public void stop() {
+		if(this.thread != null) {
+			this.thread.interrupt();
+		}
+	}
+
+	@Override
+	public void arm(final UUID uuid, final long time, final boolean authed, final int attempts) {
+		if(authed) {
+			this.arm(this.deauths, uuid, true, time + this.deauthTimeout);
+		} else {
+			this.deauths.remove(uuid);
+		}
+		if(this.unlockTimeout > 0 && attempts > 0 && attempts >= this.commandAttempts) {
+			this.arm(this.unlocks, uuid, false, time + this.unlockTimeout);
+		} else {
+			this.unlocks.remove(uuid);
+		}
+	}
+
+	private void arm(final Map<UUID, Long> armed, final UUID uuid, final boolean deauth, final long deadline) {
+		// Superseded deadlines stay queued and are dropped when they fire, so re-arming never scans the queue
+		final Long previous = armed.put(uuid, deadline);
+		if(previous == null || previous != deadline) {
+			this.queue.add(new Deadline(uuid, deauth, deadline));
+		}
+	}
+
+	@Override
+	public void disarm(final UUID uuid) {
+		this.deauths.remove(uuid);
+		this.unlocks.remove(uuid);
+	}
+
+	private void run() {
+		while(!(Thread.currentThread().isInterrupted())) {
+			try {
+				this.fire(this.queue.take());
+			} catch(final InterruptedException e) {
+				return;
+			} catch(final RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void fire(final Deadline deadline) {
+		final UUID uuid = deadline.uuid;
+		final Map<UUID, Long> armed = deadline.deauth ? this.deauths : this.unlocks;
+		final Long current = armed.get(uuid);
+		if(current == null || current != deadline.time) {
+			return;
+		}
+		try {
+			// Storage may be shared with other servers, so confirm against the stored record first
+			if(!(this.index.refresh(uuid, this.db))) {
+				return;
+			}
+			if(deadline.deauth) {
+				if(this.index.isExpired(uuid, this.deauthTimeout)) {
+					this.ar.deauth(uuid);
+				}
+			} else if(this.index.isUnlockable(uuid, this.commandAttempts, this.unlockTimeout)) {
+				this.ar.unlock(uuid);
+			}
+		} finally {
+			armed.remove(uuid, deadline.time);
+		}
+	}
+
+	private static class Deadline implements Delayed {
+
+		private final UUID uuid;
+		private final boolean deauth;
+		private final long time;
+
+		private Deadline(final UUID uuid, final boolean deauth, final long time) {
+			this.uuid = uuid;
+			this.deauth = deauth;
+			this.time = time;
+		}
+
+		@Override
+		public long getDelay(final TimeUnit unit) {
+			return unit.convert(this.time - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(final Delayed other) {
+			return Long.compare(this.time, ((Deadline) other).time);
+		}
+
+	}
+
+}
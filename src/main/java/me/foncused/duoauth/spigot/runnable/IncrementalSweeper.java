@@ -0,0 +1,100 @@
+package me.foncused.duoauth.spigot.runnable;
+
+import me.foncused.duoauth.spigot.DuoAuth;
+import me.foncused.duoauth.spigot.config.ConfigManager;
+import me.foncused.duoauth.spigot.database.AuthDatabase;
+import me.foncused.duoauth.spigot.database.ExpiryIndex;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class IncrementalSweeper {
+
+	private final DuoAuth plugin;
+	private final AuthRunnable ar;
+	private final AuthDatabase db;
+	private final ExpiryIndex index;
+	private final long deauthTimeout;
+	private final long unlockTimeout;
+	private final int commandAttempts;
+	private final int sliceSize;
+	private final long timeBudget;
+	private final long interval;
+	private final AtomicBoolean running;
+	private Iterator<UUID> cursor;
+	private long passStart;
+
+	public IncrementalSweeper(final DuoAuth plugin, final AuthRunnable ar) {
+		final ConfigManager cm = plugin.getConfigManager();
+		this.plugin = plugin;
+		this.ar = ar;
+		this.db = plugin.getDatabase();
+		this.index = plugin.getExpiryIndex();
+		this.deauthTimeout = cm.getDeauthTimeout() * 3600000L;
+		this.unlockTimeout = cm.getUnlockTimeout() * 3600000L;
+		this.commandAttempts = cm.getCommandAttempts();
+		this.sliceSize = cm.getIncrementalSliceSize();
+		this.timeBudget = cm.getIncrementalTimeBudget() * 1000000L;
+		this.interval = (this.unlockTimeout > 0
+				? Math.min(cm.getDeauthTimeoutCheckHeartbeat(), cm.getUnlockTimeoutCheckHeartbeat())
+				: cm.getDeauthTimeoutCheckHeartbeat()) * 60000L;
+		this.running = new AtomicBoolean();
+		// Zero is never within an interval of the current time, so the first pass starts on the first slice
+		this.passStart = 0;
+	}
+
+	public void start() {
+		new BukkitRunnable() {
+			@Override
+			public void run() {
+				slice();
+			}
+		}.runTaskTimerAsynchronously(this.plugin, 20, 1);
+	}
+
+	private void slice() {
+		// Async repeating tasks may overlap when a slice runs long, so only one slice runs at a time
+		if(!(this.running.compareAndSet(false, true))) {
+			return;
+		}
+		try {
+			if(this.cursor == null) {
+				final long now = System.currentTimeMillis();
+				if(now - this.passStart < this.interval) {
+					return;
+				}
+				this.passStart = now;
+				this.cursor = this.index.snapshot().iterator();
+			}
+			final long deadline = System.nanoTime() + this.timeBudget;
+			int visited = 0;
+			while(this.cursor.hasNext() && visited < this.sliceSize && System.nanoTime() < deadline) {
+				this.visit(this.cursor.next());
+				visited++;
+			}
+			if(!(this.cursor.hasNext())) {
+				this.cursor = null;
+			}
+		} finally {
+			this.running.set(false);
+		}
+	}
+
+	private void visit(final UUID uuid) {
+		final boolean expired = this.index.isExpired(uuid, this.deauthTimeout);
+		final boolean unlockable = this.unlockTimeout > 0 && this.index.isUnlockable(uuid, this.commandAttempts, this.unlockTimeout);
+		// Only accounts that look due in memory are confirmed against storage, which may be shared with other servers
+		if((!(expired || unlockable)) || (!(this.index.refresh(uuid, this.db)))) {
+			return;
+		}
+		if(expired && this.index.isExpired(uuid, this.deauthTimeout)) {
+			this.ar.deauth(uuid);
+		}
+		if(unlockable && this.index.isUnlockable(uuid, this.commandAttempts, this.unlockTimeout)) {
+			this.ar.unlock(uuid);
+		}
+	}
+
+}
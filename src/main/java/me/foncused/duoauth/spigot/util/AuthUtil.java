@@ -9,11 +9,16 @@ import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 
-import java.math.BigInteger;
 import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -21,7 +26,9 @@ public class AuthUtil {
 
 	private static DuoAuth plugin;
 	private static LangManager lm;
-	private static final String DATE_FORMAT = "MM/dd/yyyy HH:mm:ss:SSS";
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	private static final ThreadLocal<Prehash> PREHASH = ThreadLocal.withInitial(Prehash::new);
+	private static final DateTimeFormatter LEGACY_DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss:SSS");
 
 	public AuthUtil(final DuoAuth plugin) {
 		AuthUtil.plugin = plugin;
@@ -88,31 +95,83 @@ public class AuthUtil {
 		return msg;
 	}
 
-	public static String getDateFormat() {
-		return DATE_FORMAT;
-	}
-
-	public static String getFormattedTime(final String format) {
-		return new SimpleDateFormat(format).format(new Date());
+	public static long getTime(final String timestamp) {
+		try {
+			return Long.parseLong(timestamp);
+		} catch(final NumberFormatException e) {
+			// Timestamps written before schema version 2 use the legacy date format
+			try {
+				return LocalDateTime.parse(timestamp, LEGACY_DATE_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+			} catch(final DateTimeParseException ex) {
+				return -1;
+			}
+		}
 	}
 
 	public static InetAddress getPlayerAddress(final Player player) {
 		return player.getAddress().getAddress();
 	}
 
-	public static String getSecureBCryptHash(final String password, final int costFactor) {
-		return Bcrypt.hashpw(password, Bcrypt.gensalt(costFactor));
+	public static String getSecureBCryptHash(final CharSequence password, final int costFactor) {
+		final byte[] hash = getSecureSHA512Hash(password);
+		try {
+			return new String(Bcrypt.hashpw(hash, Bcrypt.gensalt(costFactor).getBytes(StandardCharsets.US_ASCII)), StandardCharsets.US_ASCII);
+		} finally {
+			Arrays.fill(hash, (byte) 0);
+		}
+	}
+
+	public static boolean checkSecureBCryptHash(final CharSequence password, final String digest) {
+		final byte[] hash = getSecureSHA512Hash(password);
+		try {
+			return Bcrypt.checkpw(hash, digest.getBytes(StandardCharsets.US_ASCII));
+		} finally {
+			Arrays.fill(hash, (byte) 0);
+		}
 	}
 
-	public static String getSecureSHA512Hash(final String password) {
-		String hash = null;
+	public static int getBCryptCostFactor(final String digest) {
+		if(digest == null || digest.length() < 7 || digest.charAt(0) != '$') {
+			return -1;
+		}
+		final int off = digest.charAt(2) == '$' ? 3 : 4;
 		try {
-			final MessageDigest md = MessageDigest.getInstance("SHA-512");
-			md.reset();
-			md.update(password.getBytes("UTF-8"));
-			hash = String.format("%0128x", new BigInteger(1, md.digest()));
-		} catch(final Exception e) {
+			return Integer.parseInt(digest.substring(off, off + 2));
+		} catch(final NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	// Returns a copy of the UTF-8 password, which callers should wipe after use
+	public static byte[] getUTF8Bytes(final CharSequence password) {
+		final Prehash prehash = PREHASH.get();
+		final int len = prehash.encode(password);
+		try {
+			return Arrays.copyOf(prehash.input, len);
+		} finally {
+			Arrays.fill(prehash.input, 0, len, (byte) 0);
+		}
+	}
+
+	// Returns the lowercase hex SHA-512 of the UTF-8 password as ASCII bytes, which callers should wipe after use
+	public static byte[] getSecureSHA512Hash(final CharSequence password) {
+		final Prehash prehash = PREHASH.get();
+		final int len = prehash.encode(password);
+		final byte[] hash = new byte[128];
+		try {
+			prehash.md.update(prehash.input, 0, len);
+			prehash.md.digest(prehash.digest, 0, 64);
+			for(int i = 0; i < 64; i++) {
+				final int b = prehash.digest[i] & 0xff;
+				hash[i << 1] = HEX[b >>> 4];
+				hash[(i << 1) + 1] = HEX[b & 0x0f];
+			}
+		} catch(final DigestException e) {
 			e.printStackTrace();
+		} finally {
+			prehash.md.reset();
+			Arrays.fill(prehash.input, 0, len, (byte) 0);
+			Arrays.fill(prehash.digest, (byte) 0);
 		}
 		return hash;
 	}
@@ -129,4 +188,54 @@ public class AuthUtil {
 		return sb.toString();
 	}
 
+	private static class Prehash {
+
+		private final MessageDigest md;
+		private final byte[] digest;
+		private byte[] input;
+
+		private Prehash() {
+			try {
+				this.md = MessageDigest.getInstance("SHA-512");
+			} catch(final NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			this.digest = new byte[64];
+			this.input = new byte[256];
+		}
+
+		// Same bytes as String.getBytes(UTF-8), including '?' for unpaired surrogates, without the intermediate array
+		private int encode(final CharSequence password) {
+			final int length = password.length();
+			if(this.input.length < length * 3) {
+				this.input = new byte[length * 3];
+			}
+			final byte[] out = this.input;
+			int off = 0;
+			for(int i = 0; i < length; i++) {
+				final char c = password.charAt(i);
+				if(c < 0x80) {
+					out[off++] = (byte) c;
+				} else if(c < 0x800) {
+					out[off++] = (byte) (0xc0 | (c >> 6));
+					out[off++] = (byte) (0x80 | (c & 0x3f));
+				} else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(password.charAt(i + 1))) {
+					final int cp = Character.toCodePoint(c, password.charAt(++i));
+					out[off++] = (byte) (0xf0 | (cp >> 18));
+					out[off++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+					out[off++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+					out[off++] = (byte) (0x80 | (cp & 0x3f));
+				} else if(Character.isSurrogate(c)) {
+					out[off++] = '?';
+				} else {
+					out[off++] = (byte) (0xe0 | (c >> 12));
+					out[off++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+					out[off++] = (byte) (0x80 | (c & 0x3f));
+				}
+			}
+			return off;
+		}
+
+	}
+
 }
@@ -0,0 +1,69 @@
+package me.foncused.duoauth.spigot;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.command.ConsoleCommandSender;
+
+import java.lang.reflect.Proxy;
+import java.util.logging.Logger;
+
+public class TestServer {
+
+	// Console output goes through Bukkit, so tests install a server whose console only logs
+	public static synchronized void install() {
+		if(Bukkit.getServer() != null) {
+			return;
+		}
+		final Logger logger = Logger.getLogger("DuoAuth");
+		final ConsoleCommandSender console = (ConsoleCommandSender) Proxy.newProxyInstance(
+				TestServer.class.getClassLoader(),
+				new Class<?>[]{ConsoleCommandSender.class},
+				(proxy, method, args) -> {
+					if(method.getName().equals("sendMessage") && args != null && args[0] instanceof String) {
+						logger.fine((String) args[0]);
+					}
+					return getDefault(method.getReturnType());
+				}
+		);
+		Bukkit.setServer((Server) Proxy.newProxyInstance(
+				TestServer.class.getClassLoader(),
+				new Class<?>[]{Server.class},
+				(proxy, method, args) -> {
+					switch(method.getName()) {
+						case "getLogger":
+							return logger;
+						case "getConsoleSender":
+							return console;
+						case "getName":
+						case "getVersion":
+						case "getBukkitVersion":
+							return "Test";
+						default:
+							return getDefault(method.getReturnType());
+					}
+				}
+		));
+	}
+
+	private static Object getDefault(final Class<?> type) {
+		if(type == boolean.class) {
+			return false;
+		} else if(type == int.class) {
+			return 0;
+		} else if(type == long.class) {
+			return 0L;
+		} else if(type == double.class) {
+			return 0D;
+		} else if(type == float.class) {
+			return 0F;
+		} else if(type == short.class) {
+			return (short) 0;
+		} else if(type == byte.class) {
+			return (byte) 0;
+		} else if(type == char.class) {
+			return (char) 0;
+		}
+		return null;
+	}
+
+}
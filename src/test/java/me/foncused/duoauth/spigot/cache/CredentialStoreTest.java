@@ -0,0 +1,81 @@
+package me.foncused.duoauth.spigot.cache;
+
+import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CredentialStoreTest {
+
+	private static GoogleAuthenticatorKey key() {
+		return new GoogleAuthenticatorKey.Builder("GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ").build();
+	}
+
+	@Test
+	public void putEvictsOldestOverLimit() {
+		final CredentialStore store = new CredentialStore(2, 10);
+		final UUID first = UUID.randomUUID();
+		final UUID second = UUID.randomUUID();
+		final UUID third = UUID.randomUUID();
+		store.put(first, key());
+		store.put(second, key());
+		store.put(third, key());
+		assertFalse(store.contains(first));
+		assertTrue(store.contains(second));
+		assertTrue(store.contains(third));
+		assertEquals(2, store.getSize());
+		assertEquals(1, store.getEvictions());
+	}
+
+	@Test
+	public void removedEntriesDoNotCountTowardLimit() {
+		final CredentialStore store = new CredentialStore(2, 10);
+		final UUID kept = UUID.randomUUID();
+		store.put(kept, key());
+		for(int i = 0; i < 10; i++) {
+			final UUID uuid = UUID.randomUUID();
+			store.put(uuid, key());
+			store.remove(uuid);
+		}
+		final UUID added = UUID.randomUUID();
+		store.put(added, key());
+		assertTrue(store.contains(kept));
+		assertTrue(store.contains(added));
+		assertEquals(2, store.getSize());
+		assertEquals(0, store.getEvictions());
+	}
+
+	@Test
+	public void replacedEntriesDoNotCountTowardLimit() {
+		final CredentialStore store = new CredentialStore(2, 10);
+		final UUID kept = UUID.randomUUID();
+		final UUID replaced = UUID.randomUUID();
+		store.put(kept, key());
+		for(int i = 0; i < 10; i++) {
+			store.put(replaced, key());
+		}
+		final GoogleAuthenticatorKey latest = store.put(replaced, key());
+		assertTrue(store.contains(kept));
+		assertSame(latest, store.get(replaced));
+		assertEquals(2, store.getSize());
+		assertEquals(0, store.getEvictions());
+	}
+
+	@Test
+	public void expireDropsDueEntries() {
+		final CredentialStore store = new CredentialStore(2, 0);
+		final UUID uuid = UUID.randomUUID();
+		store.put(uuid, key());
+		assertNull(store.get(uuid));
+		store.expire();
+		assertEquals(0, store.getSize());
+		assertEquals(1, store.getExpirations());
+	}
+
+}
@@ -0,0 +1,175 @@
+package me.foncused.duoauth.spigot.database;
+
+import com.google.gson.JsonElement;
+import me.foncused.duoauth.spigot.TestServer;
+import me.foncused.duoauth.spigot.enumerable.DatabaseProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs the MySQL backend against an in-memory H2 database in MySQL mode
+public class MysqlDatabaseTest {
+
+	private MysqlDatabase db;
+
+	@BeforeEach
+	public void connect() {
+		TestServer.install();
+		// A single connection makes a leaked pool permit show up as a timeout on the next call
+		this.db = new MysqlDatabase(null, "localhost", 3306, "duoauth", "sa", "", 1);
+		final Properties properties = new Properties();
+		properties.setProperty("user", "sa");
+		properties.setProperty("password", "");
+		assertTrue(this.db.connect(
+				"jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+				properties
+		));
+	}
+
+	@AfterEach
+	public void close() {
+		this.db.close();
+	}
+
+	private static AuthRecord record(final int attempts, final long timestamp) throws UnknownHostException {
+		return new AuthRecord("$2a$12$hash", "SECRET", false, attempts, InetAddress.getByName("127.0.0.1"), timestamp);
+	}
+
+	@Test
+	public void writeRecordThenRead() throws UnknownHostException {
+		final UUID uuid = UUID.randomUUID();
+		assertFalse(this.db.contains(uuid));
+		assertTrue(this.db.writeRecord(uuid, record(2, 1000L)));
+		assertTrue(this.db.contains(uuid));
+		final AuthRecord record = this.db.readRecord(uuid);
+		assertNotNull(record);
+		assertEquals("$2a$12$hash", record.getPassword());
+		assertEquals("SECRET", record.getSecret());
+		assertFalse(record.isAuthed());
+		assertEquals(2, record.getAttempts());
+		assertEquals(InetAddress.getByName("127.0.0.1"), record.getIp());
+		assertEquals(1000L, record.getTimestamp());
+	}
+
+	@Test
+	public void writeRecordReplacesExisting() throws UnknownHostException {
+		final UUID uuid = UUID.randomUUID();
+		assertTrue(this.db.writeRecord(uuid, record(2, 1000L)));
+		assertTrue(this.db.writeRecord(uuid, record(0, 2000L)));
+		final AuthRecord record = this.db.readRecord(uuid);
+		assertNotNull(record);
+		assertEquals(0, record.getAttempts());
+		assertEquals(2000L, record.getTimestamp());
+		assertEquals(1, this.db.readAll().size());
+	}
+
+	@Test
+	public void writePropertiesUpdatesColumns() throws UnknownHostException {
+		final UUID uuid = UUID.randomUUID();
+		assertTrue(this.db.writeRecord(uuid, record(0, 1000L)));
+		final Map<DatabaseProperty, Object> properties = new EnumMap<>(DatabaseProperty.class);
+		properties.put(DatabaseProperty.AUTHED, true);
+		properties.put(DatabaseProperty.ATTEMPTS, 3);
+		properties.put(DatabaseProperty.IP, InetAddress.getByName("10.0.0.1"));
+		properties.put(DatabaseProperty.TIMESTAMP, 5000L);
+		assertTrue(this.db.writeProperties(uuid, properties));
+		final JsonElement authed = this.db.readProperty(uuid, DatabaseProperty.AUTHED);
+		assertNotNull(authed);
+		assertTrue(authed.getAsBoolean());
+		assertEquals(3, this.db.readProperty(uuid, DatabaseProperty.ATTEMPTS).getAsInt());
+		assertEquals("10.0.0.1", this.db.readProperty(uuid, DatabaseProperty.IP).getAsString());
+		assertEquals(5000L, this.db.readProperty(uuid, DatabaseProperty.TIMESTAMP).getAsLong());
+	}
+
+	@Test
+	public void writePropertyOfMissingUserFails() {
+		assertFalse(this.db.writeProperty(UUID.randomUUID(), DatabaseProperty.ATTEMPTS, 1));
+	}
+
+	@Test
+	public void writeBatchWritesEveryUser() throws UnknownHostException {
+		final Map<UUID, Map<DatabaseProperty, Object>> batch = new HashMap<>();
+		for(int i = 0; i < 10; i++) {
+			final UUID uuid = UUID.randomUUID();
+			assertTrue(this.db.writeRecord(uuid, record(0, 1000L)));
+			final Map<DatabaseProperty, Object> properties = new EnumMap<>(DatabaseProperty.class);
+			properties.put(DatabaseProperty.ATTEMPTS, i);
+			properties.put(DatabaseProperty.AUTHED, i % 2 == 0);
+			batch.put(uuid, properties);
+		}
+		assertEquals(batch.size(), this.db.writeBatch(batch));
+		batch.forEach((uuid, properties) -> {
+			final AuthRecord record = this.db.readRecord(uuid);
+			assertNotNull(record);
+			assertEquals(properties.get(DatabaseProperty.ATTEMPTS), record.getAttempts());
+			assertEquals(properties.get(DatabaseProperty.AUTHED), record.isAuthed());
+		});
+	}
+
+	@Test
+	public void failedBatchRollsBackAndReleasesConnection() throws UnknownHostException {
+		final UUID uuid = UUID.randomUUID();
+		assertTrue(this.db.writeRecord(uuid, record(0, 1000L)));
+		final Map<DatabaseProperty, Object> properties = new EnumMap<>(DatabaseProperty.class);
+		properties.put(DatabaseProperty.ATTEMPTS, 4);
+		// Longer than the password column, so the batch fails after the first update
+		properties.put(DatabaseProperty.PASSWORD, new String(new char[200]).replace('\0', 'x'));
+		final Map<UUID, Map<DatabaseProperty, Object>> batch = new HashMap<>();
+		batch.put(uuid, properties);
+		for(int i = 0; i < 3; i++) {
+			assertEquals(0, this.db.writeBatch(batch));
+		}
+		assertTrue(this.db.contains(uuid));
+		final AuthRecord record = this.db.readRecord(uuid);
+		assertNotNull(record);
+		assertEquals(0, record.getAttempts());
+		assertEquals("$2a$12$hash", record.getPassword());
+	}
+
+	@Test
+	public void forEachRecordVisitsEveryRow() throws UnknownHostException {
+		final Map<UUID, AuthRecord> written = new HashMap<>();
+		for(int i = 0; i < 5; i++) {
+			final UUID uuid = UUID.randomUUID();
+			final AuthRecord record = record(i, 1000L + i);
+			assertTrue(this.db.writeRecord(uuid, record));
+			written.put(uuid, record);
+		}
+		final Map<UUID, AuthRecord> read = new HashMap<>();
+		assertTrue(this.db.forEachRecord(read::put));
+		assertEquals(written.keySet(), read.keySet());
+		written.forEach((uuid, record) -> {
+			assertEquals(record.getAttempts(), read.get(uuid).getAttempts());
+			assertEquals(record.getTimestamp(), read.get(uuid).getTimestamp());
+		});
+	}
+
+	@Test
+	public void deleteRemovesUser() throws UnknownHostException {
+		final UUID uuid = UUID.randomUUID();
+		assertTrue(this.db.writeRecord(uuid, record(0, 1000L)));
+		assertTrue(this.db.delete(uuid));
+		assertFalse(this.db.contains(uuid));
+		assertNull(this.db.readRecord(uuid));
+		final Set<UUID> uuids = this.db.readAll();
+		assertNotNull(uuids);
+		assertTrue(uuids.isEmpty());
+		assertFalse(this.db.delete(uuid));
+	}
+
+}
@@ -0,0 +1,92 @@
+package me.foncused.duoauth.spigot.lib.foncused;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.ShortBufferException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.Key;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// RFC 6238 Appendix B, SHA1 with the ASCII secret "12345678901234567890", truncated to 6 digits
+public class TotpTest {
+
+	private static final String SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+	private static final long STEP = 30L;
+	private static final long[][] VECTORS = {
+			{59L, 287082},
+			{1111111109L, 81804},
+			{1111111111L, 50471},
+			{1234567890L, 5924},
+			{2000000000L, 279037},
+			{20000000000L, 353130}
+	};
+
+	@Test
+	public void decodeMatchesAsciiSecret() {
+		final byte[] expected = "12345678901234567890".getBytes(StandardCharsets.US_ASCII);
+		assertArrayEquals(expected, Totp.decode(SECRET).getEncoded());
+		assertArrayEquals(expected, Totp.decode(SECRET.toLowerCase()).getEncoded());
+		assertArrayEquals(expected, Totp.decode("GEZD GNBV-GY3T QOJQ-GEZD GNBV-GY3T QOJQ====").getEncoded());
+	}
+
+	@Test
+	public void decodeRejectsInvalidSecrets() {
+		assertThrows(IllegalArgumentException.class, () -> Totp.decode("GEZDGNB1"));
+		assertThrows(IllegalArgumentException.class, () -> Totp.decode(""));
+		assertThrows(IllegalArgumentException.class, () -> Totp.decode("===="));
+	}
+
+	@Test
+	public void generateMatchesVectors() throws InvalidKeyException, ShortBufferException {
+		final Key key = Totp.decode(SECRET);
+		for(final long[] vector : VECTORS) {
+			assertEquals(vector[1], Totp.generate(key, vector[0] / STEP), "T = " + vector[0]);
+		}
+	}
+
+	@Test
+	public void verifyAcceptsVectors() {
+		final Key key = Totp.decode(SECRET);
+		for(final long[] vector : VECTORS) {
+			assertTrue(Totp.verify(key, (int) vector[1], vector[0] * 1000L, 0), "T = " + vector[0]);
+			assertFalse(Totp.verify(key, (int) (vector[1] + 1) % 1000000, vector[0] * 1000L, 0), "T = " + vector[0]);
+		}
+	}
+
+	@Test
+	public void verifyHonoursWindow() {
+		final Key key = Totp.decode(SECRET);
+		for(final long[] vector : VECTORS) {
+			final int code = (int) vector[1];
+			final long time = vector[0] * 1000L;
+			final long previous = time - STEP * 1000L;
+			final long next = time + STEP * 1000L;
+			assertFalse(Totp.verify(key, code, previous, 0), "T = " + vector[0]);
+			assertFalse(Totp.verify(key, code, next, 0), "T = " + vector[0]);
+			assertTrue(Totp.verify(key, code, previous, 1), "T = " + vector[0]);
+			assertTrue(Totp.verify(key, code, next, 1), "T = " + vector[0]);
+			assertFalse(Totp.verify(key, code, time - 2 * STEP * 1000L, 1), "T = " + vector[0]);
+			assertFalse(Totp.verify(key, code, time + 2 * STEP * 1000L, 1), "T = " + vector[0]);
+		}
+	}
+
+	@Test
+	public void verifyRejectsOutOfRangeCodes() {
+		final Key key = Totp.decode(SECRET);
+		assertFalse(Totp.verify(key, -1, 59000L, 1));
+		assertFalse(Totp.verify(key, 1000000, 59000L, 1));
+		assertFalse(Totp.verify(key, 1287082, 59000L, 1));
+	}
+
+	@Test
+	public void selfTestPasses() {
+		assertTrue(Totp.selfTest());
+	}
+
+}
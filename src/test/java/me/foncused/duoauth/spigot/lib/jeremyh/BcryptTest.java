@@ -0,0 +1,74 @@
+package me.foncused.duoauth.spigot.lib.jeremyh;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BcryptTest {
+
+	// Digests made by the class before its buffers were reused, which stored passwords depend on
+	// The vendored key schedule differs from stock jBCrypt, so the published jBCrypt vectors do not apply
+	private static final String[][] VECTORS = {
+			{"", "$2a$04$mL3URrw2aABc/X5lWWSTz.", "$2a$04$mL3URrw2aABc/X5lWWSTz.w8VoKUZ/eYf2gymS2lzvuv4Tzy2X/cq"},
+			{"password", "$2a$05$/pk2V4l/KkktVs4U5CLF3O", "$2a$05$/pk2V4l/KkktVs4U5CLF3OqAPOBWX0FazPRtFNIOMLQ.Hm/wvQdwu"},
+			{"DuoAuth#2020", "$2a$06$l6tResbLaaRDn3IytBfUbO", "$2a$06$l6tResbLaaRDn3IytBfUbOevxX66Y.5cuZFvs4lZ2Nu3f9NJ.PdLy"},
+			{"\u00dcn\u00efc\u00f6d\u00e9 p\u00e4ssw\u00f6rd \u20ac", "$2a$04$yoZYytZWIcget.nXQ3EJL.", "$2a$04$yoZYytZWIcget.nXQ3EJL.IgZ6V30hRr1W.25.W5rswOWsDw0EFDe"},
+			{"@#$%^&+=", "$2a$05$E5Sd5MEkqS.7/n8NePqgNO", "$2a$05$E5Sd5MEkqS.7/n8NePqgNOLhBKNhjP/EwxCv3wzQhC6ba.S.mZFOO"},
+			{
+					"0123456789012345678901234567890123456789012345678901234567890123456789AB",
+					"$2a$06$9K3kQZAd3U3x/hIQtD5nOu",
+					"$2a$06$9K3kQZAd3U3x/hIQtD5nOu1RyTGhgaLR8JThzqWpjf/KCFlwRZuUe"
+			},
+			{
+					"0123456789012345678901234567890123456789012345678901234567890123456789ABCDEFGHIJ",
+					"$2a$04$FV.2fNndSYkN.m5D0VFVZ.",
+					"$2a$04$FV.2fNndSYkN.m5D0VFVZ.ne/jJafE6DgKbscQr/.dinev/0iOEee"
+			},
+			{"\ud83d\ude00 emoji", "$2a$05$wTgSKT2fhjK49zgl0hBXt.", "$2a$05$wTgSKT2fhjK49zgl0hBXt.tWUJ2loJAhts5ri/z4bTL4t2QcANtjq"},
+			{"Correct Horse", "$2a$10$hhe4PfJ5MXw4ABUGyyelye", "$2a$10$hhe4PfJ5MXw4ABUGyyelyeorVPtr4BGV9xv98hXvtARZfwH9wURO."}
+	};
+
+	@Test
+	public void hashpwMatchesPreviousDigests() {
+		for(final String[] vector : VECTORS) {
+			assertEquals(vector[2], Bcrypt.hashpw(vector[0], vector[1]), vector[0]);
+			// Hashing again on the same thread reuses the engine, which must not carry state over
+			assertEquals(vector[2], Bcrypt.hashpw(vector[0], vector[1]), vector[0]);
+		}
+	}
+
+	@Test
+	public void hashpwBytesMatchesString() {
+		for(final String[] vector : VECTORS) {
+			assertArrayEquals(
+					vector[2].getBytes(StandardCharsets.US_ASCII),
+					Bcrypt.hashpw(vector[0].getBytes(StandardCharsets.UTF_8), vector[1].getBytes(StandardCharsets.US_ASCII)),
+					vector[0]
+			);
+		}
+	}
+
+	@Test
+	public void checkpwAcceptsPreviousDigests() {
+		for(final String[] vector : VECTORS) {
+			assertTrue(Bcrypt.checkpw(vector[0], vector[2]), vector[0]);
+			assertTrue(Bcrypt.checkpw(vector[0].getBytes(StandardCharsets.UTF_8), vector[2].getBytes(StandardCharsets.US_ASCII)), vector[0]);
+			assertFalse(Bcrypt.checkpw("x" + vector[0], vector[2]), vector[0]);
+		}
+	}
+
+	@Test
+	public void gensaltRoundTrips() {
+		final String salt = Bcrypt.gensalt(4);
+		assertTrue(salt.startsWith("$2a$04$"), salt);
+		assertEquals(29, salt.length());
+		assertTrue(Bcrypt.checkpw("password", Bcrypt.hashpw("password", salt)));
+		assertFalse(salt.equals(Bcrypt.gensalt(4)));
+	}
+
+}